@@ -0,0 +1,63 @@
+package Main;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Kiosk-side copy of each election's candidate list. A refresh costs one version lookup, and only
+// candidates added or changed since the cached version are fetched when it moves.
+public class CandidateCatalog {
+    private static class Entry {
+        private final Map<String, Model.Candidate> candidates = new LinkedHashMap<>();
+        private long version = -1;
+        private long checkedAt;
+    }
+
+    private final Model model;
+    private final long revalidateMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CandidateCatalog(Model model) {
+        this(model, Long.getLong("voting.catalog.revalidateMillis", 2_000));
+    }
+
+    public CandidateCatalog(Model model, long revalidateMillis) {
+        this.model = model;
+        this.revalidateMillis = revalidateMillis;
+    }
+
+    // Returns true when the cached list changed. Within the revalidate interval the cache is trusted as is.
+    public boolean refresh(String electionId) {
+        Entry entry = entries.computeIfAbsent(electionId, id -> new Entry());
+        synchronized (entry) {
+            long now = System.currentTimeMillis();
+            if (entry.version >= 0 && now - entry.checkedAt < revalidateMillis) {
+                return false;
+            }
+            if (entry.version >= 0 && model.getCatalogVersion(electionId) == entry.version) {
+                entry.checkedAt = now;
+                return false;
+            }
+            Model.CatalogDelta delta = model.getCandidateChanges(electionId, entry.version);
+            for (Model.Candidate candidate : delta.getChanged()) {
+                entry.candidates.put(candidate.getIdNumber(), candidate);
+            }
+            entry.version = delta.getVersion();
+            entry.checkedAt = now;
+            return true;
+        }
+    }
+
+    public List<Model.Candidate> get(String electionId) {
+        Entry entry = entries.get(electionId);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        synchronized (entry) {
+            return new ArrayList<>(entry.candidates.values());
+        }
+    }
+
+    public void invalidate(String electionId) {
+        entries.remove(electionId);
+    }
+}
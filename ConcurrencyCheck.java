@@ -0,0 +1,271 @@
+package Main;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Races many threads against one shared Model and checks the exact totals afterwards. Every scenario
+// runs in a fresh election so the expected counts start from zero, and those elections are deleted
+// again at the end. Exits non-zero on any mismatch.
+//   java Main.ConcurrencyCheck --url=jdbc:mysql://localhost:3306/voting_test --threads=64
+public class ConcurrencyCheck {
+    private final Model model;
+    private final int threads;
+    private final int votesPerThread;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final List<String> elections = new ArrayList<>();
+    private int scenario;
+    private boolean passed = true;
+
+    public ConcurrencyCheck(Model model, int threads, int votesPerThread) {
+        this.model = model;
+        this.threads = threads;
+        this.votesPerThread = votesPerThread;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        Model model = new Model(options.getOrDefault("url", "jdbc:mysql://localhost:3306/voting_test"),
+                options.getOrDefault("user", "root"), options.getOrDefault("password", ""));
+        model.ensureSchema();
+        ConcurrencyCheck check = new ConcurrencyCheck(model,
+                Integer.parseInt(options.getOrDefault("threads", "32")),
+                Integer.parseInt(options.getOrDefault("votes-per-thread", "50")));
+        boolean passed = check.run();
+        model.close();
+        System.exit(passed ? 0 : 1);
+    }
+
+    public boolean run() throws Exception {
+        try {
+            duplicateVoterRegistration();
+            duplicateCandidateRegistration();
+            sameVoterVotes();
+            hotCandidate();
+            candidateMovesWhileVoting();
+            closeWhileVoting();
+        } finally {
+            deleteElections();
+        }
+        System.out.println(passed ? "Concurrency checks: OK" : "Concurrency checks: FAILED");
+        return passed;
+    }
+
+    private void duplicateVoterRegistration() throws Exception {
+        String election = newElection("duplicate voter registration");
+        Map<String, Integer> outcomes = race(threads, i -> model.registerVoter(election, "Race Voter " + i, "10000001"));
+        expect("registrations that succeeded", 1, outcomes.getOrDefault("ok", 0));
+        expect("registrations rejected as duplicates", threads - 1, outcomes.getOrDefault("Voter already registered", 0));
+        expect("voters on the roll", 1, model.getVoterRoll(election).size());
+        expect("registered in turnout", 1, model.getResults(election).getRegistered());
+    }
+
+    private void duplicateCandidateRegistration() throws Exception {
+        String election = newElection("duplicate candidate registration");
+        Map<String, Integer> outcomes = race(threads,
+                i -> model.registerCandidate(election, "Race Candidate " + i, "20000001", "President"));
+        expect("registrations that succeeded", 1, outcomes.getOrDefault("ok", 0));
+        expect("registrations rejected as duplicates", threads - 1, outcomes.getOrDefault("Candidate already registered", 0));
+        expect("candidates listed", 1, model.getAllCandidates(election).size());
+        expect("catalog version", 1, (int) model.getCatalogVersion(election));
+    }
+
+    private void sameVoterVotes() throws Exception {
+        String election = newElection("one voter, many kiosks");
+        addCandidate(election, "20000001", "President");
+        addCandidate(election, "20000002", "President");
+        model.registerVoter(election, "Race Voter", "10000001");
+        Map<String, Integer> outcomes = race(threads,
+                i -> model.castVote(election, "10000001", i % 2 == 0 ? "20000001" : "20000002", null));
+        expect("votes that succeeded", 1, outcomes.getOrDefault("ok", 0));
+        expect("votes rejected", threads - 1, outcomes.getOrDefault("Voter has already voted", 0));
+        checkTotals(election, 1);
+    }
+
+    private void hotCandidate() throws Exception {
+        String election = newElection("one hot candidate");
+        addCandidate(election, "20000001", "President");
+        int voters = threads * votesPerThread;
+        registerVoters(election, voters);
+        Map<String, Integer> outcomes = race(threads, i -> {
+            for (int v = 0; v < votesPerThread; v++) {
+                model.castVote(election, voterId(i * votesPerThread + v), "20000001", null);
+            }
+        });
+        expect("threads whose votes all succeeded", threads, outcomes.getOrDefault("ok", 0));
+        checkTotals(election, voters);
+        expect("votes for the hot candidate", voters, model.getAllCandidates(election).get(0).getVoteCount());
+    }
+
+    // Position totals must follow the candidate even when it changes position between votes.
+    private void candidateMovesWhileVoting() throws Exception {
+        String election = newElection("candidate moves while voting");
+        addCandidate(election, "20000001", "Position A");
+        addCandidate(election, "20000002", "Position B");
+        int voters = threads * votesPerThread;
+        registerVoters(election, voters);
+        AtomicBoolean voting = new AtomicBoolean(true);
+        Thread mover = new Thread(() -> {
+            boolean toB = true;
+            while (voting.get()) {
+                try {
+                    model.updateCandidate(election, "20000001", "Race Candidate", toB ? "Position B" : "Position A");
+                    toB = !toB;
+                } catch (VotingException | RuntimeException e) {
+                    System.out.println("  candidate move failed: " + e.getMessage());
+                }
+            }
+        }, "candidate-mover");
+        mover.start();
+        Map<String, Integer> outcomes;
+        try {
+            outcomes = race(threads, i -> {
+                for (int v = 0; v < votesPerThread; v++) {
+                    model.castVote(election, voterId(i * votesPerThread + v), v % 2 == 0 ? "20000001" : "20000002", null);
+                }
+            });
+        } finally {
+            voting.set(false);
+            mover.join();
+        }
+        expect("threads whose votes all succeeded", threads, outcomes.getOrDefault("ok", 0));
+        checkTotals(election, voters);
+    }
+
+    // Every vote accepted before the close must be stored, and none may be stored after it.
+    private void closeWhileVoting() throws Exception {
+        String election = newElection("close while voting");
+        addCandidate(election, "20000001", "President");
+        int voters = threads * votesPerThread;
+        registerVoters(election, voters);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger acceptedAfterClose = new AtomicInteger();
+        Map<String, Integer> outcomes = race(threads, i -> {
+            if (i == 0) {
+                model.closeElection(election);
+            }
+            for (int v = 0; v < votesPerThread; v++) {
+                try {
+                    model.castVote(election, voterId(i * votesPerThread + v), "20000001", null);
+                    accepted.incrementAndGet();
+                    if (i == 0) {
+                        acceptedAfterClose.incrementAndGet();
+                    }
+                } catch (VotingException e) {
+                    if (!e.getMessage().equals("This election is closed")) {
+                        throw e;
+                    }
+                }
+            }
+        });
+        expect("threads that only saw the election close", threads, outcomes.getOrDefault("ok", 0));
+        expect("votes accepted after the close returned", 0, acceptedAfterClose.get());
+        checkTotals(election, accepted.get());
+    }
+
+    // Turnout, per-candidate counts, per-position totals and vote rows must all agree exactly.
+    private void checkTotals(String election, int expectedVotes) {
+        Model.ElectionResults results = model.getResults(election);
+        expect("voted in turnout", expectedVotes, results.getVoted());
+        int candidateVotes = 0;
+        for (Model.PositionResult position : results.getPositions()) {
+            int inPosition = 0;
+            for (Model.CandidateResult candidate : position.getCandidates()) {
+                inPosition += candidate.getVotes();
+            }
+            expect("total for " + position.getPosition(), inPosition, position.getTotalVotes());
+            candidateVotes += inPosition;
+        }
+        expect("candidate vote counts", expectedVotes, candidateVotes);
+        expect("vote rows", expectedVotes, model.getVoteHistory(election).size());
+        Model.VoterRoll roll = model.getVoterRoll(election);
+        int voted = 0;
+        for (int i = 0; i < roll.size(); i++) {
+            if (roll.hasVoted(i)) {
+                voted++;
+            }
+        }
+        expect("voters marked as voted", expectedVotes, voted);
+    }
+
+    private interface Action {
+        void run(int thread) throws Exception;
+    }
+
+    // Starts every thread at the same instant and counts outcomes by error message, "ok" for success.
+    private Map<String, Integer> race(int count, Action action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CyclicBarrier start = new CyclicBarrier(count);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    action.run(thread);
+                    return "ok";
+                } catch (VotingException e) {
+                    return e.getMessage();
+                }
+            }));
+        }
+        Map<String, Integer> outcomes = new TreeMap<>();
+        for (Future<String> future : futures) {
+            String outcome;
+            try {
+                outcome = future.get();
+            } catch (ExecutionException e) {
+                outcome = e.getCause().getClass().getSimpleName() + ": " + e.getCause().getMessage();
+            }
+            outcomes.merge(outcome, 1, Integer::sum);
+        }
+        executor.shutdown();
+        System.out.println("  outcomes: " + outcomes);
+        return outcomes;
+    }
+
+    private String newElection(String description) throws VotingException {
+        String election = "race-" + runId + "-" + (++scenario);
+        System.out.printf("%s (election %s)%n", description, election);
+        model.createElection(election, "Concurrency check: " + description);
+        elections.add(election);
+        return election;
+    }
+
+    private void deleteElections() {
+        for (String election : elections) {
+            try {
+                model.closeElection(election);
+                model.deleteElection(election);
+            } catch (VotingException | RuntimeException e) {
+                System.out.printf("Could not delete election %s: %s%n", election, e.getMessage());
+            }
+        }
+        elections.clear();
+    }
+
+    private void addCandidate(String election, String idNumber, String position) throws VotingException {
+        model.registerCandidate(election, "Race Candidate " + idNumber, idNumber, position);
+    }
+
+    private void registerVoters(String election, int count) throws Exception {
+        Map<String, Integer> outcomes = race(threads, i -> {
+            for (int v = i; v < count; v += threads) {
+                model.registerVoter(election, "Race Voter " + v, voterId(v));
+            }
+        });
+        expect("registration threads that succeeded", threads, outcomes.getOrDefault("ok", 0));
+    }
+
+    private static String voterId(int index) {
+        return String.format("%08d", 10000000 + index);
+    }
+
+    private void expect(String what, int expected, int actual) {
+        if (expected != actual) {
+            System.out.printf("  MISMATCH %s: expected %d, got %d%n", what, expected, actual);
+            passed = false;
+        }
+    }
+}
@@ -1,20 +1,33 @@
 package Main;
 
 import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Controller {
     private final Model model;
     private final View view;
+    private final RegistrationService registrations;
+    private final CandidateCatalog catalog;
+    private String candidatesViewElection;
+    private long nextLedgerBlock;
+    private String electionId = Model.DEFAULT_ELECTION;
 
     public Controller(Model model, View view) {
+        this(model, view, new RegistrationService(model, 4, 256));
+    }
+
+    public Controller(Model model, View view, RegistrationService registrations) {
         this.model = model;
         this.view = view;
+        this.registrations = registrations;
+        this.catalog = new CandidateCatalog(model);
     }
 
     public void registerVoter(String name, String idNumber) {
         try {
-            model.registerVoter(name, idNumber);
-            view.showMessage("Voter registered successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            reportRegistration(registrations.registerVoter(electionId, name, idNumber), "Voter registered successfully!");
         } catch (VotingException e) {
             view.showMessage(e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -22,19 +35,97 @@ public class Controller {
 
     public void registerCandidate(String name, String idNumber, String position) {
         try {
-            model.registerCandidate(name, idNumber, position);
-            view.showMessage("Candidate registered successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            reportRegistration(registrations.registerCandidate(electionId, name, idNumber, position), "Candidate registered successfully!");
         } catch (VotingException e) {
             view.showMessage(e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    public void castVote(String voterId, String candidateId) {
+    private void reportRegistration(CompletableFuture<Void> registration, String successMessage) {
+        registration.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                updateDatabaseStatus();
+                view.showMessage(successMessage, "Success", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            reportFailure("", error);
+        }));
+    }
+
+    public void castVote(String voterId, String candidateId, String requestId) {
         try {
-            model.castVote(voterId, candidateId);
+            model.castVote(electionId, voterId, candidateId, requestId);
+            updateDatabaseStatus();
             view.showMessage("Vote cast successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
         } catch (VotingException e) {
             view.showMessage(e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
+    }
+
+    public String getElectionId() {
+        return electionId;
+    }
+
+    public void selectElection() {
+        try {
+            List<Model.Election> elections = model.getElections();
+            Model.Election chosen = view.chooseElection(elections, electionId);
+            if (chosen == null) {
+                return;
+            }
+            electionId = chosen.getElectionId();
+            view.setElection(chosen);
+            loadElection(chosen.getElectionId());
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
+    }
+
+    public void createElection() {
+        String[] input = view.promptNewElection();
+        if (input == null) {
+            return;
+        }
+        try {
+            model.createElection(input[0], input[1]);
+            view.showMessage("Election created successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+        } catch (VotingException e) {
+            view.showMessage(e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
+    }
+
+    // Each election's registry and statistics load in the background, independently of the others.
+    private CompletableFuture<Void> loadElection(String id) {
+        return CompletableFuture.runAsync(() -> model.loadElection(id)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                SwingUtilities.invokeLater(() -> reportFailure("Could not load election: ", error));
+            }
+        });
+    }
+
+    public boolean isDegraded() {
+        return !model.isDatabaseAvailable();
+    }
+
+    private void updateDatabaseStatus() {
+        view.setDatabaseStatus(model.isDatabaseAvailable());
+    }
+
+    private void reportUnavailable(DatabaseUnavailableException e) {
+        view.setDatabaseStatus(false);
+        view.showMessage(e.getMessage(), "Database Unavailable", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void reportFailure(String prefix, Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof DatabaseUnavailableException) {
+            reportUnavailable((DatabaseUnavailableException) cause);
+        } else {
+            view.showMessage(prefix + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -48,22 +139,128 @@ public class Controller {
     }
 
     public void refreshResults() {
-        view.updateResults(model.getResults());
+        try {
+            view.updateResults(model.getResults(electionId));
+            updateDatabaseStatus();
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
     }
 
     public void refreshVoters() {
-        view.updateVoters(model.getAllVoters());
+        try {
+            view.updateVoters(model.getVoterRoll(electionId));
+            updateDatabaseStatus();
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
     }
 
     public void refreshCandidates() {
-        view.updateCandidates(model.getAllCandidates());
+        try {
+            view.updateCandidates(model.getAllCandidates(electionId));
+            updateDatabaseStatus();
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
     }
 
     public void refreshVoteHistory() {
-        view.updateVoteHistory(model.getVoteHistory());
+        try {
+            view.updateVoteHistory(model.getVoteHistory(electionId));
+            updateDatabaseStatus();
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
     }
 
+    public void refreshDashboard() {
+        VoteAnalytics analytics = model.getAnalytics(electionId);
+        if (analytics == null) {
+            loadElection(electionId).thenRun(() -> SwingUtilities.invokeLater(this::refreshDashboard));
+            return;
+        }
+        view.updateDashboard(analytics.snapshot());
+    }
+
+    public void recountVotes() {
+        view.showMessage("Recount started. Voting can continue while it runs.", "Recount", JOptionPane.INFORMATION_MESSAGE);
+        String id = electionId;
+        CompletableFuture.supplyAsync(() -> model.recountVotes(id)).whenComplete((report, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                reportFailure("Recount failed: ", error);
+                return;
+            }
+            view.showRecountReport(report);
+            if (!report.getDiscrepancies().isEmpty()
+                    && view.confirm("Update the stored vote counts to match the recount?", "Repair Vote Counts")) {
+                CompletableFuture.runAsync(() -> model.repairVoteCounts(report))
+                        .whenComplete((ignored, repairError) -> SwingUtilities.invokeLater(() -> {
+                            if (repairError != null) {
+                                reportFailure("Repair failed: ", repairError);
+                            } else {
+                                view.showRecountReport(report);
+                            }
+                        }));
+            }
+        }));
+    }
+
+    public void archiveElection() {
+        String id = electionId;
+        if (!view.confirm("Close election '" + id + "' to new votes and move its votes to the archive?", "Archive Election")) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                model.closeElection(id);
+                return model.archiveElection(id);
+            } catch (VotingException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((summary, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                reportFailure("Archiving failed: ", error);
+                return;
+            }
+            String message = String.format("Archived %d votes into %d file(s), %.1f KB.",
+                    summary.getRows(), summary.getFiles(), summary.getBytes() / 1024.0);
+            if (summary.getUnhashed() > 0) {
+                message += String.format("%n%d votes are not in the ledger yet; archive again later to move them.",
+                        summary.getUnhashed());
+            }
+            view.showMessage(message, "Archive Election", JOptionPane.INFORMATION_MESSAGE);
+        }));
+    }
+
+    // Blocks that already verified are not re-read; only checkpoints added since then are checked.
+    public void verifyLedger() {
+        long fromBlock = nextLedgerBlock;
+        CompletableFuture.supplyAsync(() -> model.verifyLedger(fromBlock)).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                reportFailure("Ledger verification failed: ", error);
+                return;
+            }
+            if (result.isValid()) {
+                nextLedgerBlock = result.getLastBlock() + 1;
+            }
+            view.showLedgerVerification(result);
+        }));
+    }
+
+    // The table is only rebuilt when the cached catalog actually changed.
     public void refreshCandidatesView() {
-        view.updateCandidatesView(model.getAllCandidates());
+        try {
+            boolean changed = catalog.refresh(electionId);
+            if (changed || !electionId.equals(candidatesViewElection)) {
+                view.updateCandidatesView(catalog.get(electionId));
+                candidatesViewElection = electionId;
+            } else {
+                view.showCandidatesView();
+            }
+            updateDatabaseStatus();
+        } catch (DatabaseUnavailableException e) {
+            reportUnavailable(e);
+        }
     }
 }
\ No newline at end of file
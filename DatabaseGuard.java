@@ -0,0 +1,182 @@
+package Main;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DatabaseGuard {
+    public enum Bulkhead { VOTING, REPORTING }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int connectTimeoutSeconds = Integer.getInteger("voting.db.connectTimeoutSeconds", 3);
+    private final int votingQueryTimeoutSeconds = Integer.getInteger("voting.db.votingTimeoutSeconds", 5);
+    private final int reportingQueryTimeoutSeconds = Integer.getInteger("voting.db.reportingTimeoutSeconds", 30);
+    private final long votingWaitMillis = Long.getLong("voting.db.votingWaitMillis", 2000);
+    private final long reportingWaitMillis = Long.getLong("voting.db.reportingWaitMillis", 500);
+    private final int failureThreshold = Integer.getInteger("voting.db.breakerFailures", 5);
+    private final long openMillis = Long.getLong("voting.db.breakerOpenMillis", 10_000);
+    private final Semaphore voting = new Semaphore(Integer.getInteger("voting.db.votingConnections", 32), true);
+    private final Semaphore reporting = new Semaphore(Integer.getInteger("voting.db.reportingConnections", 8), true);
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public DatabaseGuard() {
+        DriverManager.setLoginTimeout(connectTimeoutSeconds);
+    }
+
+    public synchronized boolean isAvailable() {
+        return state != State.OPEN || System.currentTimeMillis() - openedAt >= openMillis;
+    }
+
+    // Connections hold a bulkhead permit until closed, and every statement they create gets the
+    // bulkhead's query timeout. Only the primary feeds the breaker; replicas already fall back.
+    public Connection open(DataSource dataSource, Bulkhead bulkhead, boolean primary) throws SQLException {
+        if (primary) {
+            allowRequest();
+        }
+        Semaphore permits = bulkhead == Bulkhead.VOTING ? voting : reporting;
+        long waitMillis = bulkhead == Bulkhead.VOTING ? votingWaitMillis : reportingWaitMillis;
+        try {
+            if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                releaseTrial(primary);
+                throw new DatabaseUnavailableException("The database is busy, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseTrial(primary);
+            throw new DatabaseUnavailableException("Interrupted while waiting for the database");
+        }
+
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            permits.release();
+            if (primary && isOutage(e)) {
+                recordFailure();
+                throw new DatabaseUnavailableException("Cannot reach the database: " + e.getMessage());
+            }
+            releaseTrial(primary);
+            throw e;
+        }
+        int timeout = bulkhead == Bulkhead.VOTING ? votingQueryTimeoutSeconds : reportingQueryTimeoutSeconds;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, permits, timeout, primary));
+    }
+
+    private synchronized void allowRequest() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return;
+        }
+        throw new DatabaseUnavailableException("The database is unavailable, please try again shortly");
+    }
+
+    private synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    private synchronized void recordFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    private synchronized void releaseTrial(boolean primary) {
+        if (primary) {
+            trialInFlight = false;
+        }
+    }
+
+    private static boolean isOutage(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLTimeoutException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (sqlState != null && sqlState.startsWith("08"));
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final Semaphore permits;
+        private final int queryTimeoutSeconds;
+        private final boolean primary;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ConnectionHandler(Connection target, Semaphore permits, int queryTimeoutSeconds, boolean primary) {
+            this.target = target;
+            this.permits = permits;
+            this.queryTimeoutSeconds = queryTimeoutSeconds;
+            this.primary = primary;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close")) {
+                if (closed.compareAndSet(false, true)) {
+                    try {
+                        target.close();
+                    } finally {
+                        permits.release();
+                        releaseTrial(primary);
+                    }
+                }
+                return null;
+            }
+            Object result = call(target, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                statement.setQueryTimeout(queryTimeoutSeconds);
+                Class<?> type = statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                        (statementProxy, statementMethod, statementArgs) -> call(statement, statementMethod, statementArgs));
+            }
+            return result;
+        }
+
+        private Object call(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                Object result = method.invoke(target, args);
+                if (primary && method.getName().startsWith("execute")) {
+                    recordSuccess();
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isOutage((SQLException) cause)) {
+                    if (primary) {
+                        recordFailure();
+                    }
+                    throw new DatabaseUnavailableException("The database did not respond in time: " + cause.getMessage());
+                }
+                if (primary && cause instanceof SQLException && method.getName().startsWith("execute")) {
+                    recordSuccess();
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package Main;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// In-memory state for each election is loaded and evicted on its own, so loading a large election
+// only blocks callers of that election and a small one is never pushed out by a single big one.
+public class ElectionPartitions {
+    public static class Partition {
+        private final String electionId;
+        private final VoterRegistry registry;
+        private final VoteAnalytics analytics;
+        private volatile long lastAccess;
+
+        public Partition(String electionId, VoterRegistry registry, VoteAnalytics analytics) {
+            this.electionId = electionId;
+            this.registry = registry;
+            this.analytics = analytics;
+        }
+
+        public String getElectionId() { return electionId; }
+        public VoterRegistry getRegistry() { return registry; }
+        public VoteAnalytics getAnalytics() { return analytics; }
+    }
+
+    private final Function<String, Partition> loader;
+    private final int maxPartitions;
+    private final long maxOffHeapBytes;
+    private final Map<String, CompletableFuture<Partition>> partitions = new ConcurrentHashMap<>();
+
+    public ElectionPartitions(Function<String, Partition> loader, int maxPartitions, long maxOffHeapBytes) {
+        this.loader = loader;
+        this.maxPartitions = maxPartitions;
+        this.maxOffHeapBytes = maxOffHeapBytes;
+    }
+
+    public Partition get(String electionId) {
+        CompletableFuture<Partition> created = new CompletableFuture<>();
+        CompletableFuture<Partition> existing = partitions.putIfAbsent(electionId, created);
+        if (existing != null) {
+            return touch(join(existing));
+        }
+        try {
+            Partition partition = loader.apply(electionId);
+            created.complete(touch(partition));
+            evictExcept(electionId);
+            return partition;
+        } catch (RuntimeException e) {
+            partitions.remove(electionId, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Used on the vote path: never triggers a load, the database stays the source of truth.
+    public Partition peek(String electionId) {
+        CompletableFuture<Partition> future = partitions.get(electionId);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return touch(future.join());
+    }
+
+    public Partition reload(String electionId) {
+        evict(electionId);
+        return get(electionId);
+    }
+
+    public void evict(String electionId) {
+        partitions.remove(electionId);
+    }
+
+    public Set<String> loaded() {
+        Set<String> loaded = new TreeSet<>();
+        partitions.forEach((electionId, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                loaded.add(electionId);
+            }
+        });
+        return loaded;
+    }
+
+    private void evictExcept(String keep) {
+        while (true) {
+            List<Partition> loaded = new ArrayList<>();
+            long offHeapBytes = 0;
+            for (CompletableFuture<Partition> future : partitions.values()) {
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    Partition partition = future.join();
+                    loaded.add(partition);
+                    offHeapBytes += partition.registry.offHeapBytes();
+                }
+            }
+            if (loaded.size() <= maxPartitions && offHeapBytes <= maxOffHeapBytes) {
+                return;
+            }
+            Partition eldest = null;
+            for (Partition partition : loaded) {
+                if (!partition.electionId.equals(keep) && (eldest == null || partition.lastAccess < eldest.lastAccess)) {
+                    eldest = partition;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            partitions.remove(eldest.electionId);
+        }
+    }
+
+    private static Partition touch(Partition partition) {
+        partition.lastAccess = System.nanoTime();
+        return partition;
+    }
+
+    private static Partition join(CompletableFuture<Partition> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
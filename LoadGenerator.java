@@ -0,0 +1,318 @@
+package Main;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+    private final Model model;
+    private final Map<String, String> options;
+    private final int threads;
+    private final boolean virtualThreads;
+    private final int totalVotes;
+    private final double ratePerSecond;
+    private final int voterCount;
+    private final int candidateCount;
+    private final int positionCount;
+    private final int hotCandidates;
+    private final double hotShare;
+    private final double duplicateRate;
+    private final int idBase;
+    private final String electionId;
+
+    private final AtomicInteger nextVoter = new AtomicInteger();
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder duplicateAttempts = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> successesByCandidate = new ConcurrentHashMap<>();
+    private long[] latencies;
+
+    public LoadGenerator(Model model, Map<String, String> options) {
+        this.model = model;
+        this.options = options;
+        this.threads = intOption("threads", 8);
+        this.virtualThreads = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        this.voterCount = intOption("voters", 1000);
+        this.totalVotes = intOption("votes", voterCount);
+        this.ratePerSecond = Double.parseDouble(options.getOrDefault("rate", "0"));
+        this.candidateCount = intOption("candidates", 10);
+        this.positionCount = intOption("positions", 2);
+        this.hotCandidates = intOption("hot-candidates", 0);
+        this.hotShare = Double.parseDouble(options.getOrDefault("hot-share", "0.8"));
+        this.duplicateRate = Double.parseDouble(options.getOrDefault("duplicate-rate", "0"));
+        this.idBase = intOption("id-base", 90000000);
+        this.electionId = options.getOrDefault("election", Model.DEFAULT_ELECTION);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String user = options.getOrDefault("user", "root");
+        String password = options.getOrDefault("password", "");
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : options.getOrDefault("replicas", "").split(",")) {
+            if (!replicaUrl.isEmpty()) {
+                replicas.add(new DriverManagerDataSource(replicaUrl, user, password));
+            }
+        }
+        Model model = new Model(
+                new DriverManagerDataSource(options.getOrDefault("url", "jdbc:mysql://localhost:3306/voting_system"), user, password),
+                replicas,
+                Long.parseLong(options.getOrDefault("max-staleness", "0")));
+        model.ensureSchema();
+        ReplicationServer replication = null;
+        if (options.containsKey("replicate-port")) {
+            replication = new ReplicationServer(model, Integer.parseInt(options.get("replicate-port")));
+            replication.start();
+            System.out.printf("Replicating votes on port %d%n", replication.getPort());
+        }
+        LoadGenerator generator = new LoadGenerator(model, options);
+        boolean consistent = generator.run();
+        if (replication != null) {
+            replication.stop();
+        }
+        System.exit(consistent ? 0 : 1);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognised argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    public boolean run() throws Exception {
+        if (!electionId.equals(Model.DEFAULT_ELECTION)) {
+            try {
+                model.createElection(electionId, "Load test " + electionId);
+            } catch (VotingException e) {
+                System.out.printf("Using existing election %s (%s)%n", electionId, e.getMessage());
+            }
+        }
+        System.out.printf("Registering %d voters and %d candidates...%n", voterCount, candidateCount);
+        register();
+        Map<String, Integer> countsBefore = candidateVoteCounts();
+
+        latencies = new long[totalVotes];
+        System.out.printf("Casting %d votes with %d %s threads (%s)...%n", totalVotes, threads,
+                virtualThreads ? "virtual" : "platform",
+                ratePerSecond > 0 ? ratePerSecond + " votes/s" : "closed loop");
+
+        ExecutorService executor = newExecutor();
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> worker(start)));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        report(elapsed);
+        return checkConsistency(countsBefore);
+    }
+
+    private void register() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                model.registerCandidate(electionId, "Load Candidate " + index, candidateId(index),
+                        "Position " + (index % positionCount + 1));
+                return null;
+            }));
+        }
+        for (int i = 0; i < voterCount; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                model.registerVoter(electionId, "Load Voter " + index, voterId(index));
+                return null;
+            }));
+        }
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        executor.shutdown();
+        if (failed > 0) {
+            System.out.printf("Warning: %d registrations failed (IDs already in use? try another --id-base)%n", failed);
+        }
+    }
+
+    private ExecutorService newExecutor() throws Exception {
+        if (!virtualThreads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer");
+        }
+    }
+
+    private void worker(long start) {
+        long intervalNanos = ratePerSecond > 0 ? (long) (1_000_000_000L / ratePerSecond) : 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long slot = nextSlot.getAndIncrement();
+            if (slot >= totalVotes) {
+                return;
+            }
+            long scheduled = intervalNanos > 0 ? start + slot * intervalNanos : System.nanoTime();
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String voterId = pickVoter(random);
+            String candidateId = pickCandidate(random);
+            try {
+                model.castVote(electionId, voterId, candidateId, null);
+                successes.increment();
+                successesByCandidate.computeIfAbsent(candidateId, k -> new LongAdder()).increment();
+            } catch (VotingException e) {
+                errors.computeIfAbsent(e.getMessage(), k -> new LongAdder()).increment();
+            } catch (RuntimeException e) {
+                errors.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+                        k -> new LongAdder()).increment();
+            }
+            // Measured from the scheduled start so a stalled system is not hidden by coordinated omission.
+            latencies[recorded.getAndIncrement()] = System.nanoTime() - scheduled;
+        }
+    }
+
+    private String pickVoter(ThreadLocalRandom random) {
+        int used = nextVoter.get();
+        if (used > 0 && random.nextDouble() < duplicateRate) {
+            duplicateAttempts.increment();
+            return voterId(random.nextInt(Math.min(used, voterCount)));
+        }
+        int index = nextVoter.getAndIncrement();
+        if (index >= voterCount) {
+            duplicateAttempts.increment();
+            return voterId(random.nextInt(voterCount));
+        }
+        return voterId(index);
+    }
+
+    private String pickCandidate(ThreadLocalRandom random) {
+        if (hotCandidates > 0 && random.nextDouble() < hotShare) {
+            return candidateId(random.nextInt(Math.min(hotCandidates, candidateCount)));
+        }
+        return candidateId(random.nextInt(candidateCount));
+    }
+
+    private void report(long elapsedNanos) {
+        int count = recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.println("Load test results");
+        System.out.println("----------------------------------------");
+        System.out.printf("Attempts:            %d (%d duplicate retries)%n", count, duplicateAttempts.sum());
+        System.out.printf("Successful votes:    %d%n", successes.sum());
+        System.out.printf("Elapsed:             %.2f s%n", seconds);
+        System.out.printf("Throughput:          %.1f attempts/s, %.1f votes/s%n", count / seconds, successes.sum() / seconds);
+        System.out.printf("Latency p50/p90/p99: %.2f / %.2f / %.2f ms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99));
+        System.out.printf("Latency p99.9/max:   %.2f / %.2f ms%n",
+                percentile(sorted, 0.999), count == 0 ? 0.0 : sorted[count - 1] / 1e6);
+        System.out.println("Errors:");
+        if (errors.isEmpty()) {
+            System.out.println("  none");
+        }
+        errors.forEach((message, total) -> System.out.printf("  %-50s %d%n", message, total.sum()));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private boolean checkConsistency(Map<String, Integer> countsBefore) {
+        boolean consistent = true;
+        Map<String, Integer> countsAfter = candidateVoteCounts();
+        for (int i = 0; i < candidateCount; i++) {
+            String id = candidateId(i);
+            long expected = successesByCandidate.getOrDefault(id, new LongAdder()).sum();
+            long actual = countsAfter.getOrDefault(id, 0) - countsBefore.getOrDefault(id, 0);
+            if (expected != actual) {
+                System.out.printf("MISMATCH candidate %s: %d successful votes, vote_count moved by %d%n", id, expected, actual);
+                consistent = false;
+            }
+        }
+
+        Set<String> generatedVoters = new HashSet<>();
+        for (int i = 0; i < voterCount; i++) {
+            generatedVoters.add(voterId(i));
+        }
+        Model.VoterRoll roll = model.getVoterRoll(electionId);
+        long votedFlags = 0;
+        for (int i = 0; i < roll.size(); i++) {
+            if (roll.hasVoted(i) && generatedVoters.contains(roll.getIdNumber(i))) {
+                votedFlags++;
+            }
+        }
+        long voteRows = model.getVoteHistory(electionId).stream()
+                .filter(v -> generatedVoters.contains(v.get("voter_id")))
+                .count();
+        if (votedFlags != successes.sum()) {
+            System.out.printf("MISMATCH has_voted: %d flags set, %d successful votes%n", votedFlags, successes.sum());
+            consistent = false;
+        }
+        if (voteRows != successes.sum()) {
+            System.out.printf("MISMATCH votes table: %d rows, %d successful votes%n", voteRows, successes.sum());
+            consistent = false;
+        }
+        System.out.println(consistent ? "Tally consistency: OK" : "Tally consistency: FAILED");
+        return consistent;
+    }
+
+    private Map<String, Integer> candidateVoteCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Model.Candidate candidate : model.getAllCandidates(electionId)) {
+            counts.put(candidate.getIdNumber(), candidate.getVoteCount());
+        }
+        return counts;
+    }
+
+    private String voterId(int index) {
+        return String.format("%08d", idBase + candidateCount + index);
+    }
+
+    private String candidateId(int index) {
+        return String.format("%08d", idBase + index);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+    }
+}
@@ -1,32 +1,54 @@
 package Main;
 
+import javax.sql.DataSource;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Pattern;
 
+// One Model is shared by every kiosk thread. There is no Model-wide lock: each check-then-act is
+// settled by the database (primary keys, conditional updates and row locks inside one transaction),
+// and the few in-memory structures are concurrent, immutable or guarded on their own.
 public class Model {
     private static class Person {
-        protected String name;
-        protected String idNumber;
+        protected final String name;
+        protected final int idNumber;
         protected String personId;
 
-        public Person(String name, String idNumber) {
+        protected Person(String name, int idNumber, String personId) {
             this.name = name;
             this.idNumber = idNumber;
-            this.personId = UUID.randomUUID().toString();
+            this.personId = personId;
         }
 
         public String getName() { return name; }
-        public String getIdNumber() { return idNumber; }
-        public String getPersonId() { return personId; }
+        public int getId() { return idNumber; }
+        public String getIdNumber() { return formatId(idNumber); }
+
+        // Only newly registered people need a fresh ID; rehydrated rows carry their stored one.
+        public String getPersonId() {
+            if (personId == null) {
+                personId = UUID.randomUUID().toString();
+            }
+            return personId;
+        }
     }
 
     public static class Voter extends Person {
         private boolean hasVoted;
 
         public Voter(String name, String idNumber) {
-            super(name, idNumber);
-            this.hasVoted = false;
+            this(name, parseId(idNumber), null, false);
+        }
+
+        Voter(String name, int idNumber, String personId, boolean hasVoted) {
+            super(name, idNumber, personId);
+            this.hasVoted = hasVoted;
         }
 
         public boolean hasVoted() { return hasVoted; }
@@ -34,13 +56,17 @@ public class Model {
     }
 
     public static class Candidate extends Person {
-        private String position;
+        private final String position;
         private int voteCount;
 
         public Candidate(String name, String idNumber, String position) {
-            super(name, idNumber);
+            this(name, parseId(idNumber), null, position, 0);
+        }
+
+        Candidate(String name, int idNumber, String personId, String position, int voteCount) {
+            super(name, idNumber, personId);
             this.position = position;
-            this.voteCount = 0;
+            this.voteCount = voteCount;
         }
 
         public String getPosition() { return position; }
@@ -49,75 +75,823 @@ public class Model {
         public void setVoteCount(int voteCount) { this.voteCount = voteCount; }
     }
 
-    private final String url;
-    private final String username;
-    private final String password;
+    public static class Election {
+        private final String electionId;
+        private final String name;
+        private final boolean closed;
+
+        Election(String electionId, String name, boolean closed) {
+            this.electionId = electionId;
+            this.name = name;
+            this.closed = closed;
+        }
+
+        public String getElectionId() { return electionId; }
+        public String getName() { return name; }
+        public boolean isClosed() { return closed; }
+    }
+
+    public static class CatalogDelta {
+        private final long version;
+        private final List<Candidate> changed = new ArrayList<>();
+
+        CatalogDelta(long version) {
+            this.version = version;
+        }
+
+        public long getVersion() { return version; }
+        public List<Candidate> getChanged() { return changed; }
+    }
+
+    public static class ElectionResults {
+        private final List<PositionResult> positions = new ArrayList<>();
+        private int registered;
+        private int voted;
+
+        ElectionResults() {
+        }
+
+        ElectionResults(int registered, int voted) {
+            this.registered = registered;
+            this.voted = voted;
+        }
+
+        public List<PositionResult> getPositions() { return positions; }
+        public int getRegistered() { return registered; }
+        public int getVoted() { return voted; }
+        public double getTurnoutPercentage() { return percentage(voted, registered); }
+    }
+
+    public static class PositionResult {
+        private final String position;
+        private final int totalVotes;
+        private final List<CandidateResult> candidates = new ArrayList<>();
+
+        PositionResult(String position, int totalVotes) {
+            this.position = position;
+            this.totalVotes = totalVotes;
+        }
+
+        public String getPosition() { return position; }
+        public int getTotalVotes() { return totalVotes; }
+        public List<CandidateResult> getCandidates() { return candidates; }
+    }
+
+    public static class CandidateResult {
+        private final String idNumber;
+        private final String name;
+        private final int votes;
+        private final double percentage;
+
+        CandidateResult(String idNumber, String name, int votes, int positionTotal) {
+            this.idNumber = idNumber;
+            this.name = name;
+            this.votes = votes;
+            this.percentage = percentage(votes, positionTotal);
+        }
+
+        public String getIdNumber() { return idNumber; }
+        public String getName() { return name; }
+        public int getVotes() { return votes; }
+        public double getPercentage() { return percentage; }
+    }
+
+    private static double percentage(int part, int whole) {
+        return whole == 0 ? 0.0 : part * 100.0 / whole;
+    }
+
+    public static class VoterRoll {
+        private int[] ids;
+        private String[] names;
+        private String[] personIds;
+        private final BitSet voted;
+        private int size;
+
+        public VoterRoll(int capacity) {
+            int initial = Math.max(16, capacity);
+            this.ids = new int[initial];
+            this.names = new String[initial];
+            this.personIds = new String[initial];
+            this.voted = new BitSet(initial);
+        }
+
+        public void add(int idNumber, String name, String personId, boolean hasVoted) {
+            if (size == ids.length) {
+                int grown = size + (size >> 1);
+                ids = Arrays.copyOf(ids, grown);
+                names = Arrays.copyOf(names, grown);
+                personIds = Arrays.copyOf(personIds, grown);
+            }
+            ids[size] = idNumber;
+            names[size] = name;
+            personIds[size] = personId;
+            voted.set(size, hasVoted);
+            size++;
+        }
+
+        public int size() { return size; }
+        public int getId(int index) { return ids[index]; }
+        public String getIdNumber(int index) { return formatId(ids[index]); }
+        public String getName(int index) { return names[index]; }
+        public String getPersonId(int index) { return personIds[index]; }
+        public boolean hasVoted(int index) { return voted.get(index); }
+        public int votedCount() { return voted.cardinality(); }
+    }
+
+    static int parseId(String idNumber) {
+        return Integer.parseInt(idNumber.trim());
+    }
+
+    static String formatId(int idNumber) {
+        char[] digits = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            digits[i] = (char) ('0' + idNumber % 10);
+            idNumber /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static final Pattern ID_PATTERN = Pattern.compile("\\d{8}");
+    private static final Pattern ELECTION_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final int DEDUP_WINDOW = 10_000;
+    private static final int RECOUNT_PARALLELISM = 8;
+    private static final int SCAN_PAGE_SIZE = 10_000;
+    public static final String DEFAULT_ELECTION = "default";
+    // A vote rolls back rather than commit later than this after its row took an ID, which bounds how
+    // long the ledger waits before treating a gap in the IDs as a rollback.
+    static final long VOTE_COMMIT_DEADLINE_MILLIS = 2_000;
+    // Turnout is spread over this many rows per election so concurrent votes rarely wait on one row lock.
+    static final int TURNOUT_SLOTS = 16;
+
+    private final ReplicaRouter router;
     private final Map<String, String> adminCredentials;
+    private final Map<String, VoteOutcome> recentOutcomes;
+    private static final Set<String> FINAL_REJECTIONS = Set.of(
+            "Voter has already voted",
+            "This election is closed",
+            "Request ID was already used for a different vote");
+    private final ElectionPartitions partitions;
+    private final VoteArchive archive;
+    // Recounts and archiving of one election exclude each other, so no vote is counted twice or missed.
+    private final Map<String, Object> maintenanceLocks = new ConcurrentHashMap<>();
+    private volatile int analyticsHours = 24;
+    private VoteLedger ledger;
+    private final Map<String, ResultsFeedPublisher> resultsFeeds = new ConcurrentHashMap<>();
+    private final List<VoteListener> listeners = new CopyOnWriteArrayList<>();
 
     public Model(String url, String username, String password) {
-        this.url = url;
-        this.username = username;
-        this.password = password;
-        this.adminCredentials = new HashMap<>();
-        adminCredentials.put("admin", "admin123");
+        this(new DriverManagerDataSource(url, username, password), Collections.emptyList(), 0);
     }
 
-    public void registerVoter(String name, String idNumber) throws VotingException {
+    // Reporting reads go to replicas within maxStalenessMillis of the primary; writes always use the primary.
+    public Model(DataSource primary, List<DataSource> replicas, long maxStalenessMillis) {
+        this.router = new ReplicaRouter(primary, replicas, maxStalenessMillis);
+        this.adminCredentials = Map.of("admin", "admin123");
+        this.recentOutcomes = new LinkedHashMap<String, VoteOutcome>(DEDUP_WINDOW, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VoteOutcome> eldest) {
+                return size() > DEDUP_WINDOW;
+            }
+        };
+        this.partitions = new ElectionPartitions(this::loadPartition,
+                Integer.getInteger("voting.partitions.max", 16),
+                Long.getLong("voting.partitions.maxBytes", 256L << 20));
+        this.archive = new VoteArchive(router, Paths.get(System.getProperty("voting.archive.cacheDir", "archive-cache")));
+    }
+
+    public void createElection(String electionId, String name) throws VotingException {
+        validateElection(electionId);
         if (name.trim().isEmpty()) {
-            throw new VotingException("Name cannot be empty");
+            throw new VotingException("Election name cannot be empty");
         }
-        if (!Pattern.matches("\\d{8}", idNumber)) {
-            throw new VotingException("Invalid ID number format (must be 8 digits)");
+        try (Connection conn = router.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement election = conn.prepareStatement(
+                         "INSERT INTO elections (election_id, name) VALUES (?, ?)");
+                 PreparedStatement turnout = conn.prepareStatement(
+                         "INSERT INTO turnout_totals (scope, slot, registered, voted) VALUES (?, ?, 0, 0)");
+                 PreparedStatement catalog = conn.prepareStatement(
+                         "INSERT INTO catalog_versions (election_id, version) VALUES (?, 0)")) {
+                election.setString(1, electionId);
+                election.setString(2, name.trim());
+                election.executeUpdate();
+                for (int slot = 0; slot < TURNOUT_SLOTS; slot++) {
+                    turnout.setString(1, electionId);
+                    turnout.setInt(2, slot);
+                    turnout.addBatch();
+                }
+                turnout.executeBatch();
+                catalog.setString(1, electionId);
+                catalog.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new VotingException("Election already exists");
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create election: " + e.getMessage());
         }
-        if (getVoter(idNumber) != null) {
-            throw new VotingException("Voter already registered");
+    }
+
+    public List<Election> getElections() {
+        List<Election> elections = new ArrayList<>();
+        String sql = "SELECT election_id, name, closed_at FROM elections ORDER BY created_at, election_id";
+        try (Connection conn = router.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                elections.add(new Election(rs.getString("election_id"), rs.getString("name"),
+                        rs.getTimestamp("closed_at") != null));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve elections: " + e.getMessage());
+        }
+        return elections;
+    }
+
+    public void closeElection(String electionId) throws VotingException {
+        validateElection(electionId);
+        String sql = "UPDATE elections SET closed_at = CURRENT_TIMESTAMP WHERE election_id = ? AND closed_at IS NULL";
+        try (Connection conn = router.getWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            if (pstmt.executeUpdate() == 0 && closedAt(conn, electionId) == null) {
+                throw new VotingException("Unknown election: " + electionId);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to close election: " + e.getMessage());
+        }
+    }
+
+    // Moves every vote of a closed election out of the votes table into archive files.
+    public VoteArchive.Summary archiveElection(String electionId) throws VotingException {
+        validateElection(electionId);
+        Timestamp closedAt;
+        try (Connection conn = router.getWriteConnection()) {
+            closedAt = closedAt(conn, electionId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to look up election: " + e.getMessage());
+        }
+        if (closedAt == null) {
+            throw new VotingException("Close the election before archiving it");
+        }
+        // Votes check the election row under a shared lock, so once the close has committed no vote
+        // can still be in flight.
+        return archiveVotesBefore(electionId, System.currentTimeMillis());
+    }
+
+    // Open elections can archive old votes too; request IDs of archived votes are no longer replayed.
+    public VoteArchive.Summary archiveVotesBefore(String electionId, long cutoffMillis) throws VotingException {
+        validateElection(electionId);
+        synchronized (maintenanceLock(electionId)) {
+            return archive.archive(electionId, cutoffMillis);
         }
+    }
+
+    private Object maintenanceLock(String electionId) {
+        return maintenanceLocks.computeIfAbsent(electionId, id -> new Object());
+    }
+
+    // Removes a closed election and everything in it, for scratch elections such as those of the
+    // concurrency check. Votes already in the ledger are evidence, so such elections are refused.
+    public void deleteElection(String electionId) throws VotingException {
+        validateElection(electionId);
+        if (electionId.equals(DEFAULT_ELECTION)) {
+            throw new VotingException("The default election cannot be deleted");
+        }
+        try (Connection conn = router.getBackgroundConnection()) {
+            if (closedAt(conn, electionId) == null) {
+                throw new VotingException("Close the election before deleting it");
+            }
+            if (!VoteLedger.acquireWriterLock(conn, 10)) {
+                throw new VotingException("The vote ledger is busy, please try again");
+            }
+            try {
+                // Archived votes were all in the ledger before they left the votes table.
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT EXISTS (SELECT 1 FROM votes v JOIN vote_ledger l ON l.vote_id = v.id WHERE v.election_id = ?) " +
+                        "OR EXISTS (SELECT 1 FROM vote_archives WHERE election_id = ?)")) {
+                    pstmt.setString(1, electionId);
+                    pstmt.setString(2, electionId);
+                    ResultSet rs = pstmt.executeQuery();
+                    if (rs.next() && rs.getBoolean(1)) {
+                        throw new VotingException("Votes of this election are in the ledger and cannot be deleted");
+                    }
+                }
+                conn.setAutoCommit(false);
+                try {
+                    for (String sql : new String[]{
+                            "DELETE FROM votes WHERE election_id = ?",
+                            "DELETE FROM voters WHERE election_id = ?",
+                            "DELETE FROM candidates WHERE election_id = ?",
+                            "DELETE FROM position_totals WHERE election_id = ?",
+                            "DELETE FROM turnout_totals WHERE scope = ?",
+                            "DELETE FROM catalog_versions WHERE election_id = ?",
+                            "DELETE FROM elections WHERE election_id = ?"}) {
+                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                            pstmt.setString(1, electionId);
+                            pstmt.executeUpdate();
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } finally {
+                VoteLedger.releaseWriterLock(conn);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete election: " + e.getMessage());
+        }
+        evictElection(electionId);
+    }
+
+    private static Timestamp closedAt(Connection conn, String electionId) throws SQLException, VotingException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT closed_at FROM elections WHERE election_id = ?")) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new VotingException("Unknown election: " + electionId);
+            }
+            return rs.getTimestamp(1);
+        }
+    }
+
+    public void registerVoter(String name, String idNumber) throws VotingException {
+        registerVoter(DEFAULT_ELECTION, name, idNumber);
+    }
+
+    public void registerVoter(String electionId, String name, String idNumber) throws VotingException {
+        validateElection(electionId);
+        validateVoter(name, idNumber);
         Voter voter = new Voter(name, idNumber);
-        saveVoter(voter);
+        saveVoter(electionId, voter);
+        ElectionPartitions.Partition partition = partitions.peek(electionId);
+        if (partition != null) {
+            partition.getRegistry().add(voter.getId(), voter.getName(), false);
+            partition.getAnalytics().onVoterRegistered(electionId, idNumber);
+        }
+        for (VoteListener listener : listeners) {
+            try {
+                listener.onVoterRegistered(electionId, idNumber);
+            } catch (RuntimeException e) {
+                System.err.println("Vote listener failed: " + e.getMessage());
+            }
+        }
     }
 
     public void registerCandidate(String name, String idNumber, String position) throws VotingException {
+        registerCandidate(DEFAULT_ELECTION, name, idNumber, position);
+    }
+
+    public void registerCandidate(String electionId, String name, String idNumber, String position) throws VotingException {
+        validateElection(electionId);
+        validateCandidate(name, idNumber, position);
+        saveCandidate(electionId, new Candidate(name, idNumber, position));
+    }
+
+    // Votes already cast move with the candidate when the position changes.
+    public void updateCandidate(String electionId, String idNumber, String name, String position) throws VotingException {
+        validateElection(electionId);
+        validateCandidate(name, idNumber, position);
+        try (Connection conn = router.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement current = conn.prepareStatement(
+                         "SELECT position, vote_count FROM candidates WHERE election_id = ? AND id_number = ? FOR UPDATE");
+                 PreparedStatement update = conn.prepareStatement(
+                         "UPDATE candidates SET name = ?, position = ?, catalog_version = ? " +
+                         "WHERE election_id = ? AND id_number = ?");
+                 PreparedStatement totals = conn.prepareStatement(
+                         "INSERT INTO position_totals (election_id, position, total_votes) VALUES (?, ?, ?) " +
+                         "ON DUPLICATE KEY UPDATE total_votes = total_votes + VALUES(total_votes)")) {
+                long version = bumpCatalogVersion(conn, electionId);
+                current.setString(1, electionId);
+                current.setString(2, idNumber);
+                ResultSet rs = current.executeQuery();
+                if (!rs.next()) {
+                    conn.rollback();
+                    throw new VotingException("Candidate not found");
+                }
+                String oldPosition = rs.getString("position");
+                int votes = rs.getInt("vote_count");
+
+                update.setString(1, name.trim());
+                update.setString(2, position.trim());
+                update.setLong(3, version);
+                update.setString(4, electionId);
+                update.setString(5, idNumber);
+                update.executeUpdate();
+                if (!oldPosition.equals(position.trim()) && votes > 0) {
+                    totals.setString(1, electionId);
+                    totals.setString(2, oldPosition);
+                    totals.setInt(3, -votes);
+                    totals.addBatch();
+                    totals.setString(1, electionId);
+                    totals.setString(2, position.trim());
+                    totals.setInt(3, votes);
+                    totals.addBatch();
+                    totals.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | VotingException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update candidate: " + e.getMessage());
+        }
+    }
+
+    public long getCatalogVersion(String electionId) {
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT version FROM catalog_versions WHERE election_id = ?")) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read candidate catalog version: " + e.getMessage());
+        }
+    }
+
+    // Candidates added or changed after sinceVersion; pass -1 for the whole catalog.
+    public CatalogDelta getCandidateChanges(String electionId, long sinceVersion) {
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement version = conn.prepareStatement(
+                     "SELECT version FROM catalog_versions WHERE election_id = ?");
+             PreparedStatement changes = conn.prepareStatement(
+                     "SELECT * FROM candidates WHERE election_id = ? AND catalog_version > ?")) {
+            version.setString(1, electionId);
+            long current;
+            try (ResultSet rs = version.executeQuery()) {
+                current = rs.next() ? rs.getLong(1) : 0;
+            }
+            CatalogDelta delta = new CatalogDelta(current);
+            changes.setString(1, electionId);
+            changes.setLong(2, sinceVersion);
+            try (ResultSet rs = changes.executeQuery()) {
+                while (rs.next()) {
+                    delta.changed.add(readCandidate(rs));
+                }
+            }
+            return delta;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve candidate changes: " + e.getMessage());
+        }
+    }
+
+    static void validateElection(String electionId) throws VotingException {
+        if (electionId == null || !ELECTION_PATTERN.matcher(electionId).matches()) {
+            throw new VotingException("Invalid election ID (letters, digits, '-' or '_')");
+        }
+    }
+
+    static void validateVoter(String name, String idNumber) throws VotingException {
+        if (name.trim().isEmpty()) {
+            throw new VotingException("Name cannot be empty");
+        }
+        if (!ID_PATTERN.matcher(idNumber).matches()) {
+            throw new VotingException("Invalid ID number format (must be 8 digits)");
+        }
+    }
+
+    static void validateCandidate(String name, String idNumber, String position) throws VotingException {
         if (name.trim().isEmpty() || position.trim().isEmpty()) {
             throw new VotingException("Name and position cannot be empty");
         }
-        if (!Pattern.matches("\\d{8}", idNumber)) {
+        if (!ID_PATTERN.matcher(idNumber).matches()) {
             throw new VotingException("Invalid ID number format (must be 8 digits)");
         }
-        if (getCandidate(idNumber) != null) {
-            throw new VotingException("Candidate already registered");
+    }
+
+    public void ensureSchema() {
+        try (Connection conn = router.getBackgroundConnection()) {
+            Schema.ensure(conn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to prepare database schema: " + e.getMessage());
+        }
+    }
+
+    public RecountEngine.Report recountVotes() {
+        return recountVotes(DEFAULT_ELECTION);
+    }
+
+    public RecountEngine.Report recountVotes(String electionId) {
+        synchronized (maintenanceLock(electionId)) {
+            return new RecountEngine(router, archive, electionId, RECOUNT_PARALLELISM).recount();
+        }
+    }
+
+    public void repairVoteCounts(RecountEngine.Report report) {
+        synchronized (maintenanceLock(report.getElectionId())) {
+            new RecountEngine(router, archive, report.getElectionId(), RECOUNT_PARALLELISM).repair(report);
+        }
+    }
+
+    public boolean isDatabaseAvailable() {
+        return router.isPrimaryAvailable();
+    }
+
+    public void addVoteListener(VoteListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeVoteListener(VoteListener listener) {
+        listeners.remove(listener);
+    }
+
+    // The window applies to election partitions loaded from now on; the default election is loaded here.
+    public VoteAnalytics startAnalytics(int hours) {
+        analyticsHours = hours;
+        return partitions.get(DEFAULT_ELECTION).getAnalytics();
+    }
+
+    public VoteAnalytics getAnalytics() {
+        return getAnalytics(DEFAULT_ELECTION);
+    }
+
+    // Returns null until the election has been loaded with loadElection.
+    public VoteAnalytics getAnalytics(String electionId) {
+        ElectionPartitions.Partition partition = partitions.peek(electionId);
+        return partition == null ? null : partition.getAnalytics();
+    }
+
+    public void loadElection(String electionId) {
+        partitions.get(electionId);
+    }
+
+    public void evictElection(String electionId) {
+        partitions.evict(electionId);
+    }
+
+    public Set<String> getLoadedElections() {
+        return partitions.loaded();
+    }
+
+    public synchronized VoteLedger startLedger() {
+        if (ledger == null) {
+            ledger = new VoteLedger(router, archive);
+            ledger.start();
+        }
+        return ledger;
+    }
+
+    // Displays map the file instead of querying; one results query per interval serves all of them.
+    public synchronized ResultsFeedPublisher startResultsFeed(Path file, String electionId, long intervalMillis, int capacity)
+            throws IOException {
+        ResultsFeedPublisher publisher = resultsFeeds.get(electionId);
+        if (publisher == null) {
+            publisher = new ResultsFeedPublisher(this, file, electionId, capacity);
+            publisher.start(intervalMillis);
+            resultsFeeds.put(electionId, publisher);
         }
-        Candidate candidate = new Candidate(name, idNumber, position);
-        saveCandidate(candidate);
+        return publisher;
+    }
+
+    public VoteLedger.Verification verifyLedger(long fromBlock) {
+        return new VoteLedger(router, archive).verify(fromBlock);
+    }
+
+    public VoterRegistry loadVoterRegistry() {
+        return loadVoterRegistry(DEFAULT_ELECTION);
+    }
+
+    public VoterRegistry loadVoterRegistry(String electionId) {
+        return partitions.reload(electionId).getRegistry();
+    }
+
+    // Analytics start from the registry's counts, so turnout needs no extra queries.
+    private ElectionPartitions.Partition loadPartition(String electionId) {
+        VoterRegistry registry;
+        String sql = "SELECT id_number, name, has_voted FROM voters WHERE election_id = ?";
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            registry = new VoterRegistry(readTurnout(conn, electionId).getRegistered());
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                registry.add(parseId(rs.getString("id_number")), rs.getString("name"), rs.getBoolean("has_voted"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load voter registry: " + e.getMessage());
+        }
+        VoteAnalytics analytics = new VoteAnalytics(analyticsHours, registry.size(), registry.votedCount());
+        return new ElectionPartitions.Partition(electionId, registry, analytics);
+    }
+
+    public VoterRegistry getVoterRegistry() {
+        return getVoterRegistry(DEFAULT_ELECTION);
+    }
+
+    public VoterRegistry getVoterRegistry(String electionId) {
+        ElectionPartitions.Partition partition = partitions.peek(electionId);
+        return partition == null ? null : partition.getRegistry();
+    }
+
+    public synchronized void close() {
+        if (ledger != null) {
+            ledger.stop();
+        }
+        resultsFeeds.values().forEach(ResultsFeedPublisher::stop);
+        resultsFeeds.clear();
+        router.close();
     }
 
     public void castVote(String voterId, String candidateId) throws VotingException {
-        Voter voter = getVoter(voterId);
-        Candidate candidate = getCandidate(candidateId);
+        castVote(voterId, candidateId, null);
+    }
+
+    public void castVote(String voterId, String candidateId, String requestId) throws VotingException {
+        castVote(DEFAULT_ELECTION, voterId, candidateId, requestId);
+    }
+
+    public void castVote(String electionId, String voterId, String candidateId, String requestId) throws VotingException {
+        validateElection(electionId);
+        if (requestId != null) {
+            VoteOutcome previous;
+            synchronized (recentOutcomes) {
+                previous = recentOutcomes.get(requestId);
+            }
+            if (previous != null) {
+                previous.replay(electionId, voterId, candidateId);
+                return;
+            }
+        }
+
+        VoteOutcome outcome;
+        try {
+            applyVote(electionId, voterId, candidateId, requestId);
+            outcome = new VoteOutcome(electionId, voterId, candidateId, null);
+        } catch (VotingException e) {
+            // Only outcomes a retry cannot change are replayed; anything else is tried afresh.
+            if (!FINAL_REJECTIONS.contains(e.getMessage())) {
+                throw e;
+            }
+            outcome = new VoteOutcome(electionId, voterId, candidateId, e.getMessage());
+        }
+        if (requestId != null) {
+            synchronized (recentOutcomes) {
+                recentOutcomes.put(requestId, outcome);
+            }
+        }
+        outcome.replay(electionId, voterId, candidateId);
+    }
+
+    private void applyVote(String electionId, String voterId, String candidateId, String requestId) throws VotingException {
+        ElectionPartitions.Partition partition = partitions.peek(electionId);
+        VoterRegistry registry = partition == null ? null : partition.getRegistry();
+        if (registry != null && ID_PATTERN.matcher(voterId).matches() && registry.hasVoted(parseId(voterId))) {
+            if (isRecordedRequest(electionId, voterId, candidateId, requestId)) {
+                return;
+            }
+            throw new VotingException("Voter has already voted");
+        }
+
+        Voter voter = getVoter(electionId, voterId);
+        Candidate candidate = getCandidate(electionId, candidateId);
 
         if (voter == null || candidate == null) {
             throw new VotingException("Invalid voter or candidate ID");
         }
         if (voter.hasVoted()) {
+            if (isRecordedRequest(electionId, voterId, candidateId, requestId)) {
+                return;
+            }
             throw new VotingException("Voter has already voted");
         }
 
-        voter.markVoted();
-        candidate.addVote();
-        saveVote(voterId, candidateId);
-        updateVoter(voter);
-        updateCandidate(candidate);
+        long voteId;
+        try (Connection conn = router.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (isClosed(conn, electionId)) {
+                    conn.rollback();
+                    throw new VotingException("This election is closed");
+                }
+                if (!markVoted(conn, electionId, voterId)) {
+                    // Looked up on this connection so a vote never holds two connections at once.
+                    boolean recorded;
+                    try {
+                        recorded = isRecordedRequest(conn, electionId, voterId, candidateId, requestId);
+                    } finally {
+                        conn.rollback();
+                    }
+                    if (recorded) {
+                        return;
+                    }
+                    throw new VotingException("Voter has already voted");
+                }
+                // The candidate row is locked before the vote row exists, so a repair holding that lock
+                // sees the count and the votes agree. The vote row goes in last, so the lock waits are
+                // over before it takes an ID and the commit deadline bounds how long it stays unseen.
+                addCandidateVote(conn, electionId, candidateId);
+                addPositionVote(conn, electionId, candidateId);
+                long idTakenAt = System.nanoTime();
+                voteId = saveVote(conn, electionId, voterId, candidateId, requestId);
+                if (System.nanoTime() - idTakenAt > VOTE_COMMIT_DEADLINE_MILLIS * 1_000_000) {
+                    conn.rollback();
+                    throw new VotingException("Recording the vote took too long, please try again");
+                }
+                conn.commit();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback();
+                throw new VotingException("Request ID was already used for a different vote");
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to cast vote: " + e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        if (partition != null) {
+            registry.markVoted(voter.getId());
+            partition.getAnalytics().onVoteCast(electionId, voteId, voterId, candidateId, candidate.getPosition(), now);
+        }
+        for (VoteListener listener : listeners) {
+            try {
+                listener.onVoteCast(electionId, voteId, voterId, candidateId, candidate.getPosition(), now);
+            } catch (RuntimeException e) {
+                System.err.println("Vote listener failed: " + e.getMessage());
+            }
+        }
     }
 
-    public Map<String, List<Map<String, Object>>> getResults() {
-        Map<String, List<Map<String, Object>>> results = new HashMap<>();
-        for (Candidate candidate : getAllCandidates()) {
-            results.computeIfAbsent(candidate.getPosition(), k -> new ArrayList<>());
-            Map<String, Object> candidateData = new HashMap<>();
-            candidateData.put("name", candidate.getName());
-            candidateData.put("votes", candidate.getVoteCount());
-            results.get(candidate.getPosition()).add(candidateData);
+    private boolean isRecordedRequest(String electionId, String voterId, String candidateId, String requestId)
+            throws VotingException {
+        if (requestId == null) {
+            return false;
+        }
+        try (Connection conn = router.getWriteConnection()) {
+            return isRecordedRequest(conn, electionId, voterId, candidateId, requestId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to look up vote request: " + e.getMessage());
+        }
+    }
+
+    private static boolean isRecordedRequest(Connection conn, String electionId, String voterId, String candidateId,
+                                             String requestId) throws SQLException, VotingException {
+        if (requestId == null) {
+            return false;
+        }
+        String sql = "SELECT election_id, voter_id, candidate_id FROM votes WHERE request_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, requestId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return false;
+            }
+            if (!rs.getString("election_id").equals(electionId) || !rs.getString("voter_id").equals(voterId)
+                    || !rs.getString("candidate_id").equals(candidateId)) {
+                throw new VotingException("Request ID was already used for a different vote");
+            }
+            return true;
+        }
+    }
+
+    public ElectionResults getResults() {
+        return getResults(DEFAULT_ELECTION);
+    }
+
+    public ElectionResults getResults(String electionId) {
+        String sql = "SELECT c.position, c.id_number, c.name, c.vote_count, " +
+                     "COALESCE(p.total_votes, 0) AS position_total " +
+                     "FROM candidates c " +
+                     "LEFT JOIN position_totals p ON p.election_id = c.election_id AND p.position = c.position " +
+                     "WHERE c.election_id = ? " +
+                     "ORDER BY c.position, c.vote_count DESC, c.name";
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ElectionResults results = readTurnout(conn, electionId);
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            PositionResult current = null;
+            while (rs.next()) {
+                String position = rs.getString("position");
+                if (current == null || !current.position.equals(position)) {
+                    current = new PositionResult(position, rs.getInt("position_total"));
+                    results.positions.add(current);
+                }
+                current.candidates.add(new CandidateResult(
+                        rs.getString("id_number"), rs.getString("name"), rs.getInt("vote_count"), current.totalVotes));
+            }
+            return results;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve results: " + e.getMessage());
+        }
+    }
+
+    private static ElectionResults readTurnout(Connection conn, String electionId) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(registered), 0), COALESCE(SUM(voted), 0) FROM turnout_totals WHERE scope = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return new ElectionResults(rs.getInt(1), rs.getInt(2));
         }
-        return results;
     }
 
     public boolean authenticateAdmin(String username, String password) {
@@ -125,16 +899,29 @@ public class Model {
     }
 
     public List<Map<String, String>> getVoteHistory() {
+        return getVoteHistory(DEFAULT_ELECTION);
+    }
+
+    public List<Map<String, String>> getVoteHistory(String electionId) {
+        return getVoteHistory(electionId, VoteArchive.Filter.ALL);
+    }
+
+    // Hot votes and archived votes are merged, with the time range and positions applied to both.
+    public List<Map<String, String>> getVoteHistory(String electionId, VoteArchive.Filter filter) {
         List<Map<String, String>> history = new ArrayList<>();
-        String sql = "SELECT v.voter_id, v.candidate_id, v.vote_time, " +
-                     "vtr.name AS voter_name, c.name AS candidate_name, c.position " +
-                     "FROM votes v " +
-                     "JOIN voters vtr ON v.voter_id = vtr.id_number " +
-                     "JOIN candidates c ON v.candidate_id = c.id_number " +
-                     "ORDER BY v.vote_time DESC";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        StringBuilder sql = new StringBuilder("SELECT v.voter_id, v.candidate_id, v.vote_time, " +
+                "vtr.name AS voter_name, c.name AS candidate_name, c.position " +
+                "FROM votes v " +
+                "JOIN voters vtr ON vtr.election_id = v.election_id AND vtr.id_number = v.voter_id " +
+                "JOIN candidates c ON c.election_id = v.election_id AND c.id_number = v.candidate_id " +
+                "WHERE v.election_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(electionId);
+        appendFilter(sql, params, filter, "v.vote_time", "c.position");
+        sql.append(" ORDER BY v.vote_time DESC");
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = prepare(conn, sql.toString(), params)) {
+            ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
                 Map<String, String> vote = new HashMap<>();
                 vote.put("voter_id", rs.getString("voter_id"));
@@ -148,21 +935,111 @@ public class Model {
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve vote history: " + e.getMessage());
         }
+
+        List<Map<String, String>> archived = new ArrayList<>();
+        archive.scan(electionId, filter, (voteId, voterId, candidateId, candidateName, position, millis) -> {
+            Map<String, String> vote = new HashMap<>();
+            vote.put("voter_id", formatId(voterId));
+            vote.put("candidate_id", candidateId);
+            vote.put("candidate_name", candidateName);
+            vote.put("position", position);
+            vote.put("vote_time", new Timestamp(millis).toString());
+            archived.add(vote);
+        });
+        if (!archived.isEmpty()) {
+            Map<String, String> voterNames = new HashMap<>();
+            for (Voter voter : getAllVoters(electionId)) {
+                voterNames.put(voter.getIdNumber(), voter.getName());
+            }
+            for (Map<String, String> vote : archived) {
+                vote.put("voter_name", voterNames.getOrDefault(vote.get("voter_id"), ""));
+            }
+            history.addAll(archived);
+            history.sort((a, b) -> Timestamp.valueOf(b.get("vote_time")).compareTo(Timestamp.valueOf(a.get("vote_time"))));
+        }
         return history;
     }
 
+    // Streams committed votes cast at or after fromMillis to the sink, one page of vote IDs at a time,
+    // so a standby can catch up without the whole table being buffered.
+    public void scanVotes(long fromMillis, VoteListener sink) {
+        String start = "SELECT COALESCE(MIN(id), 0) FROM votes WHERE vote_time >= ?";
+        String page = "SELECT v.id, v.election_id, v.voter_id, v.candidate_id, v.vote_time, c.position FROM votes v " +
+                      "JOIN candidates c ON c.election_id = v.election_id AND c.id_number = v.candidate_id " +
+                      "WHERE v.id >= ? ORDER BY v.id LIMIT " + SCAN_PAGE_SIZE;
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement first = conn.prepareStatement(start);
+             PreparedStatement pstmt = conn.prepareStatement(page)) {
+            first.setTimestamp(1, new Timestamp(Math.max(0, fromMillis)));
+            long nextId;
+            try (ResultSet rs = first.executeQuery()) {
+                rs.next();
+                nextId = rs.getLong(1);
+            }
+            if (nextId == 0) {
+                return;
+            }
+            int rows;
+            do {
+                rows = 0;
+                pstmt.setLong(1, nextId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long voteId = rs.getLong(1);
+                        sink.onVoteCast(rs.getString(2), voteId, rs.getString(3), rs.getString(4),
+                                rs.getString(6), rs.getTimestamp(5).getTime());
+                        nextId = voteId + 1;
+                        rows++;
+                    }
+                }
+            } while (rows == SCAN_PAGE_SIZE);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to scan votes: " + e.getMessage());
+        }
+    }
+
+    private static void appendFilter(StringBuilder sql, List<Object> params, VoteArchive.Filter filter,
+                                     String timeColumn, String positionColumn) {
+        if (filter.getFromMillis() != Long.MIN_VALUE) {
+            sql.append(" AND ").append(timeColumn).append(" >= ?");
+            params.add(new Timestamp(filter.getFromMillis()));
+        }
+        if (filter.getToMillis() != Long.MAX_VALUE) {
+            sql.append(" AND ").append(timeColumn).append(" < ?");
+            params.add(new Timestamp(filter.getToMillis()));
+        }
+        if (filter.getPositions() != null) {
+            if (filter.getPositions().isEmpty()) {
+                sql.append(" AND 1 = 0");
+                return;
+            }
+            sql.append(" AND ").append(positionColumn).append(" IN (")
+                    .append(String.join(", ", Collections.nCopies(filter.getPositions().size(), "?"))).append(")");
+            params.addAll(filter.getPositions());
+        }
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
     public List<Voter> getAllVoters() {
+        return getAllVoters(DEFAULT_ELECTION);
+    }
+
+    public List<Voter> getAllVoters(String electionId) {
         List<Voter> voters = new ArrayList<>();
-        String sql = "SELECT * FROM voters";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        String sql = "SELECT * FROM voters WHERE election_id = ?";
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                Voter voter = new Voter(rs.getString("name"), rs.getString("id_number"));
-                if (rs.getBoolean("has_voted")) {
-                    voter.markVoted();
-                }
-                voters.add(voter);
+                voters.add(readVoter(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve voters: " + e.getMessage());
@@ -170,19 +1047,48 @@ public class Model {
         return voters;
     }
 
+    public VoterRoll getVoterRoll() {
+        return getVoterRoll(DEFAULT_ELECTION);
+    }
+
+    public VoterRoll getVoterRoll(String electionId) {
+        String countSql = "SELECT COUNT(*) FROM voters WHERE election_id = ?";
+        String sql = "SELECT id_number, name, person_id, has_voted FROM voters WHERE election_id = ?";
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement count = conn.prepareStatement(countSql);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int expected;
+            count.setString(1, electionId);
+            try (ResultSet rs = count.executeQuery()) {
+                expected = rs.next() ? rs.getInt(1) : 0;
+            }
+            VoterRoll roll = new VoterRoll(expected);
+            pstmt.setString(1, electionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    roll.add(parseId(rs.getString("id_number")), rs.getString("name"),
+                            rs.getString("person_id"), rs.getBoolean("has_voted"));
+                }
+            }
+            return roll;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve voter roll: " + e.getMessage());
+        }
+    }
+
     public List<Candidate> getAllCandidates() {
+        return getAllCandidates(DEFAULT_ELECTION);
+    }
+
+    public List<Candidate> getAllCandidates(String electionId) {
         List<Candidate> candidates = new ArrayList<>();
-        String sql = "SELECT * FROM candidates";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        String sql = "SELECT * FROM candidates WHERE election_id = ?";
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                Candidate candidate = new Candidate(
-                        rs.getString("name"),
-                        rs.getString("id_number"),
-                        rs.getString("position"));
-                candidate.setVoteCount(rs.getInt("vote_count"));
-                candidates.add(candidate);
+                candidates.add(readCandidate(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve candidates: " + e.getMessage());
@@ -190,47 +1096,98 @@ public class Model {
         return candidates;
     }
 
-    private void saveVoter(Voter voter) {
-        String sql = "INSERT INTO voters (id_number, name, person_id, has_voted) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, voter.getIdNumber());
-            pstmt.setString(2, voter.getName());
-            pstmt.setString(3, voter.getPersonId());
-            pstmt.setBoolean(4, voter.hasVoted());
-            pstmt.executeUpdate();
+    private static Voter readVoter(ResultSet rs) throws SQLException {
+        return new Voter(rs.getString("name"), parseId(rs.getString("id_number")),
+                rs.getString("person_id"), rs.getBoolean("has_voted"));
+    }
+
+    private static Candidate readCandidate(ResultSet rs) throws SQLException {
+        return new Candidate(rs.getString("name"), parseId(rs.getString("id_number")),
+                rs.getString("person_id"), rs.getString("position"), rs.getInt("vote_count"));
+    }
+
+    // The primary key rejects duplicates, so concurrent registrations of one ID cannot both succeed.
+    private void saveVoter(String electionId, Voter voter) throws VotingException {
+        String sql = "INSERT INTO voters (election_id, id_number, name, person_id, has_voted) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = router.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, electionId);
+                pstmt.setString(2, voter.getIdNumber());
+                pstmt.setString(3, voter.getName());
+                pstmt.setString(4, voter.getPersonId());
+                pstmt.setBoolean(5, voter.hasVoted());
+                pstmt.executeUpdate();
+                // Every election has its turnout rows, so no row means the election does not exist.
+                if (!addTurnout(conn, electionId, "registered")) {
+                    conn.rollback();
+                    throw new VotingException("Unknown election: " + electionId);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new VotingException("Voter already registered");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save voter: " + e.getMessage());
         }
     }
 
-    private void saveCandidate(Candidate candidate) {
-        String sql = "INSERT INTO candidates (id_number, name, person_id, position, vote_count) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, candidate.getIdNumber());
-            pstmt.setString(2, candidate.getName());
-            pstmt.setString(3, candidate.getPersonId());
-            pstmt.setString(4, candidate.getPosition());
-            pstmt.setInt(5, candidate.getVoteCount());
-            pstmt.executeUpdate();
+    private void saveCandidate(String electionId, Candidate candidate) throws VotingException {
+        String sql = "INSERT INTO candidates (election_id, id_number, name, person_id, position, vote_count, catalog_version) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = router.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                long version = bumpCatalogVersion(conn, electionId);
+                pstmt.setString(1, electionId);
+                pstmt.setString(2, candidate.getIdNumber());
+                pstmt.setString(3, candidate.getName());
+                pstmt.setString(4, candidate.getPersonId());
+                pstmt.setString(5, candidate.getPosition());
+                pstmt.setInt(6, candidate.getVoteCount());
+                pstmt.setLong(7, version);
+                pstmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException | VotingException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new VotingException("Candidate already registered");
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save candidate: " + e.getMessage());
         }
     }
 
-    private Voter getVoter(String idNumber) {
-        String sql = "SELECT * FROM voters WHERE id_number = ?";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
+    // Catalog writes for one election serialise on its version row, so each change gets its own version.
+    private static long bumpCatalogVersion(Connection conn, String electionId) throws SQLException, VotingException {
+        try (PreparedStatement bump = conn.prepareStatement(
+                     "UPDATE catalog_versions SET version = version + 1 WHERE election_id = ?");
+             PreparedStatement read = conn.prepareStatement(
+                     "SELECT version FROM catalog_versions WHERE election_id = ?")) {
+            bump.setString(1, electionId);
+            if (bump.executeUpdate() == 0) {
+                throw new VotingException("Unknown election: " + electionId);
+            }
+            read.setString(1, electionId);
+            ResultSet rs = read.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private Voter getVoter(String electionId, String idNumber) {
+        String sql = "SELECT * FROM voters WHERE election_id = ? AND id_number = ?";
+        try (Connection conn = router.getWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, idNumber);
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, idNumber);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
-                Voter voter = new Voter(rs.getString("name"), rs.getString("id_number"));
-                if (rs.getBoolean("has_voted")) {
-                    voter.markVoted();
-                }
-                return voter;
+                return readVoter(rs);
             }
             return null;
         } catch (SQLException e) {
@@ -238,59 +1195,108 @@ public class Model {
         }
     }
 
-    private Candidate getCandidate(String idNumber) {
-        String sql = "SELECT * FROM candidates WHERE id_number = ?";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
+    private Candidate getCandidate(String electionId, String idNumber) {
+        String sql = "SELECT * FROM candidates WHERE election_id = ? AND id_number = ?";
+        try (Connection conn = router.getWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, idNumber);
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, idNumber);
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                Candidate candidate = new Candidate(
-                        rs.getString("name"),
-                        rs.getString("id_number"),
-                        rs.getString("position"));
-                candidate.setVoteCount(rs.getInt("vote_count"));
-                return candidate;
+            if (!rs.next()) {
+                return null;
             }
-            return null;
+            return readCandidate(rs);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve candidate: " + e.getMessage());
         }
     }
 
-    private void updateVoter(Voter voter) {
-        String sql = "UPDATE voters SET has_voted = ? WHERE id_number = ?";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setBoolean(1, voter.hasVoted());
-            pstmt.setString(2, voter.getIdNumber());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update voter: " + e.getMessage());
+    // The shared lock holds off closeElection until this vote commits or rolls back.
+    private static boolean isClosed(Connection conn, String electionId) throws SQLException {
+        String sql = "SELECT closed_at FROM elections WHERE election_id = ? LOCK IN SHARE MODE";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() && rs.getTimestamp(1) != null;
         }
     }
 
-    private void updateCandidate(Candidate candidate) {
-        String sql = "UPDATE candidates SET vote_count = ? WHERE id_number = ?";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, candidate.getVoteCount());
-            pstmt.setString(2, candidate.getIdNumber());
+    private boolean markVoted(Connection conn, String electionId, String voterId) throws SQLException {
+        String sql = "UPDATE voters SET has_voted = TRUE WHERE election_id = ? AND id_number = ? AND has_voted = FALSE";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, voterId);
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    private void addCandidateVote(Connection conn, String electionId, String candidateId) throws SQLException {
+        String sql = "UPDATE candidates SET vote_count = vote_count + 1 WHERE election_id = ? AND id_number = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, candidateId);
             pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update candidate: " + e.getMessage());
         }
     }
 
-    private void saveVote(String voterId, String candidateId) {
-        String sql = "INSERT INTO votes (voter_id, candidate_id) VALUES (?, ?)";
-        try (Connection conn = DriverManager.getConnection(url, username, password);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, voterId);
+    // Runs after addCandidateVote has locked the candidate row, so the position read here is the one
+    // the vote counts for even if updateCandidate moves the candidate concurrently.
+    private void addPositionVote(Connection conn, String electionId, String candidateId) throws SQLException {
+        String sql = "INSERT INTO position_totals (election_id, position, total_votes) " +
+                     "SELECT election_id, position, 1 FROM candidates WHERE election_id = ? AND id_number = ? " +
+                     "ON DUPLICATE KEY UPDATE total_votes = total_votes + 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
             pstmt.setString(2, candidateId);
             pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to save vote: " + e.getMessage());
+        }
+        addTurnout(conn, electionId, "voted");
+    }
+
+    private boolean addTurnout(Connection conn, String electionId, String column) throws SQLException {
+        String sql = "UPDATE turnout_totals SET " + column + " = " + column + " + 1 WHERE scope = ? AND slot = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setInt(2, ThreadLocalRandom.current().nextInt(TURNOUT_SLOTS));
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    private long saveVote(Connection conn, String electionId, String voterId, String candidateId, String requestId)
+            throws SQLException {
+        String sql = "INSERT INTO votes (election_id, voter_id, candidate_id, request_id) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, voterId);
+            pstmt.setString(3, candidateId);
+            pstmt.setString(4, requestId);
+            pstmt.executeUpdate();
+            ResultSet keys = pstmt.getGeneratedKeys();
+            return keys.next() ? keys.getLong(1) : 0;
+        }
+    }
+
+    private static class VoteOutcome {
+        private final String electionId;
+        private final String voterId;
+        private final String candidateId;
+        private final String error;
+
+        VoteOutcome(String electionId, String voterId, String candidateId, String error) {
+            this.electionId = electionId;
+            this.voterId = voterId;
+            this.candidateId = candidateId;
+            this.error = error;
+        }
+
+        void replay(String electionId, String voterId, String candidateId) throws VotingException {
+            if (!this.electionId.equals(electionId) || !this.voterId.equals(voterId)
+                    || !this.candidateId.equals(candidateId)) {
+                throw new VotingException("Request ID was already used for a different vote");
+            }
+            if (error != null) {
+                throw new VotingException(error);
+            }
         }
     }
 }
\ No newline at end of file
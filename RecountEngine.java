@@ -0,0 +1,329 @@
+package Main;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class RecountEngine {
+    private static final long PARTITION_SIZE = 200_000;
+
+    public static class Discrepancy {
+        private final String candidateId;
+        private final int recorded;
+        private final long counted;
+
+        Discrepancy(String candidateId, int recorded, long counted) {
+            this.candidateId = candidateId;
+            this.recorded = recorded;
+            this.counted = counted;
+        }
+
+        public String getCandidateId() { return candidateId; }
+        public int getRecorded() { return recorded; }
+        public long getCounted() { return counted; }
+    }
+
+    public static class Report {
+        private final String electionId;
+        private final long watermark;
+        private final long recentFromMillis;
+        private final Map<String, Long> counted = new HashMap<>();
+        private final Map<String, Long> recent = new HashMap<>();
+        private final List<Discrepancy> discrepancies = new ArrayList<>();
+        private final List<String> busy = new ArrayList<>();
+        private Map<String, Long> archived;
+        private long archivedRows;
+        private long votesScanned;
+        private long elapsedMillis;
+        private boolean repaired;
+
+        Report(String electionId, long watermark, long recentFromMillis) {
+            this.electionId = electionId;
+            this.watermark = watermark;
+            this.recentFromMillis = recentFromMillis;
+        }
+
+        public String getElectionId() { return electionId; }
+        public Map<String, Long> getCounted() { return counted; }
+        public List<Discrepancy> getDiscrepancies() { return discrepancies; }
+        // Candidates the repair skipped because voting kept their row locked.
+        public List<String> getBusy() { return busy; }
+        public long getVotesScanned() { return votesScanned; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isRepaired() { return repaired; }
+    }
+
+    // Votes still uncommitted when the scan started took their row within the commit deadline before
+    // it; the rest of the margin covers the commit and vote_time being stored to the second.
+    private static final long RECENT_MARGIN_MILLIS = Model.VOTE_COMMIT_DEADLINE_MILLIS + 4_000;
+    private static final int REPAIR_LOCK_WAIT_SECONDS = 1;
+
+    private final ReplicaRouter router;
+    private final VoteArchive archive;
+    private final String electionId;
+    private final int parallelism;
+
+    public RecountEngine(ReplicaRouter router, VoteArchive archive, String electionId, int parallelism) {
+        this.router = router;
+        this.archive = archive;
+        this.electionId = electionId;
+        this.parallelism = parallelism;
+    }
+
+    // The partitioned scan is the count. It reads without locks up to the highest vote ID at its start
+    // and also counts each candidate's votes from the last few seconds, the only ones that could
+    // still have been uncommitted while it ran; check() re-reads just those and anything newer.
+    public Report recount() {
+        long start = System.currentTimeMillis();
+        long[] range = idRange();
+        Report report = new Report(electionId, range[1], range[2] - RECENT_MARGIN_MILLIS);
+        Map<String, long[]> scanned;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            scanned = range[1] < range[0] ? new HashMap<>()
+                    : pool.invoke(new RangeCount(range[0], range[1], report.recentFromMillis));
+        } finally {
+            pool.shutdown();
+        }
+        scanned.forEach((candidate, counts) -> {
+            report.counted.put(candidate, counts[0]);
+            report.recent.put(candidate, counts[1]);
+        });
+        // Archived votes are no longer in the votes table but still count towards each candidate.
+        loadArchived(report);
+        report.archived.forEach((candidate, votes) -> report.counted.merge(candidate, votes, Long::sum));
+        for (long votes : report.counted.values()) {
+            report.votesScanned += votes;
+        }
+        reconcile(report, false);
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    public void repair(Report report) {
+        reconcile(report, true);
+        report.repaired = true;
+    }
+
+    // Lowest and highest vote ID, and the database clock, read together at the start of the scan.
+    private long[] idRange() {
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT COALESCE(MIN(id), 1), COALESCE(MAX(id), 0), NOW(3) FROM votes WHERE election_id = ?")) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).getTime()};
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read vote ID range: " + e.getMessage());
+        }
+    }
+
+    // Archive files are only ever added, so an unchanged row total before and after the scan means
+    // the counts cover exactly that set of files.
+    private void loadArchived(Report report) {
+        long before;
+        do {
+            before = archivedRows();
+            report.archived = archive.count(electionId, VoteArchive.Filter.ALL);
+            report.archivedRows = before;
+        } while (archivedRows() != before);
+    }
+
+    private long archivedRows() {
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT COALESCE(SUM(row_count), 0) FROM vote_archives WHERE election_id = ?")) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read archived vote total: " + e.getMessage());
+        }
+    }
+
+    // A plain recount only reads. The repair locks one mismatched candidate at a time, waits at most
+    // a second for the lock so voting never stalls behind it, and checks again before writing.
+    private void reconcile(Report report, boolean repair) {
+        Set<String> positions = new HashSet<>();
+        try (Connection conn = router.getBackgroundConnection()) {
+            if (!repair) {
+                report.discrepancies.clear();
+                for (String candidateId : candidateIds(conn)) {
+                    long[] figures = check(conn, report, candidateId);
+                    report.counted.put(candidateId, figures[1]);
+                    if (figures[0] != figures[1]) {
+                        report.discrepancies.add(new Discrepancy(candidateId, (int) figures[0], figures[1]));
+                    }
+                }
+                return;
+            }
+            report.busy.clear();
+            List<Discrepancy> repaired = new ArrayList<>();
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET SESSION innodb_lock_wait_timeout = " + REPAIR_LOCK_WAIT_SECONDS);
+            }
+            conn.setAutoCommit(false);
+            for (Discrepancy discrepancy : report.discrepancies) {
+                String candidateId = discrepancy.getCandidateId();
+                try {
+                    String position = lockCandidate(conn, candidateId);
+                    long[] figures = check(conn, report, candidateId);
+                    if (position != null && figures[0] != figures[1]) {
+                        try (PreparedStatement pstmt = conn.prepareStatement(
+                                "UPDATE candidates SET vote_count = ? WHERE election_id = ? AND id_number = ?")) {
+                            pstmt.setLong(1, figures[1]);
+                            pstmt.setString(2, electionId);
+                            pstmt.setString(3, candidateId);
+                            pstmt.executeUpdate();
+                        }
+                        positions.add(position);
+                        repaired.add(new Discrepancy(candidateId, (int) figures[0], figures[1]));
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (!isLockWaitTimeout(e)) {
+                        throw e;
+                    }
+                    report.busy.add(candidateId);
+                }
+            }
+            report.discrepancies.clear();
+            report.discrepancies.addAll(repaired);
+            for (String position : positions) {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE position_totals SET total_votes = " +
+                        "(SELECT COALESCE(SUM(vote_count), 0) FROM candidates WHERE election_id = ? AND position = ?) " +
+                        "WHERE election_id = ? AND position = ?")) {
+                    pstmt.setString(1, electionId);
+                    pstmt.setString(2, position);
+                    pstmt.setString(3, electionId);
+                    pstmt.setString(4, position);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to reconcile vote counts: " + e.getMessage());
+        }
+    }
+
+    private List<String> candidateIds(Connection conn) throws SQLException {
+        List<String> candidateIds = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id_number FROM candidates WHERE election_id = ?")) {
+            pstmt.setString(1, electionId);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                candidateIds.add(rs.getString(1));
+            }
+        }
+        return candidateIds;
+    }
+
+    private String lockCandidate(Connection conn, String candidateId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT position FROM candidates WHERE election_id = ? AND id_number = ? FOR UPDATE")) {
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, candidateId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static boolean isLockWaitTimeout(SQLException e) {
+        return e.getErrorCode() == 1205 || e instanceof SQLTransactionRollbackException;
+    }
+
+    // Returns the stored count and the recounted one. The scanned figure keeps everything up to the
+    // watermark except its recent votes, which are re-read here together with votes above the
+    // watermark. One statement reads them with the stored count, so a vote committing meanwhile is
+    // either in both or in neither, and the archived total shows whether archiving moved votes since.
+    private long[] check(Connection conn, Report report, String candidateId) throws SQLException {
+        String sql = "SELECT c.vote_count, " +
+                     "(SELECT COUNT(*) FROM votes WHERE election_id = ? AND candidate_id = ? AND id > ?), " +
+                     "(SELECT COUNT(*) FROM votes WHERE election_id = ? AND candidate_id = ? AND id <= ? AND vote_time >= ?), " +
+                     "(SELECT COALESCE(SUM(row_count), 0) FROM vote_archives WHERE election_id = ?) " +
+                     "FROM candidates c WHERE c.election_id = ? AND c.id_number = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setString(2, candidateId);
+            pstmt.setLong(3, report.watermark);
+            pstmt.setString(4, electionId);
+            pstmt.setString(5, candidateId);
+            pstmt.setLong(6, report.watermark);
+            pstmt.setTimestamp(7, new Timestamp(report.recentFromMillis));
+            pstmt.setString(8, electionId);
+            pstmt.setString(9, electionId);
+            pstmt.setString(10, candidateId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return new long[]{0, 0};
+            }
+            if (rs.getLong(4) != report.archivedRows) {
+                throw new RuntimeException("Votes were archived while the recount ran, please recount again");
+            }
+            long counted = report.counted.getOrDefault(candidateId, 0L) - report.recent.getOrDefault(candidateId, 0L)
+                    + rs.getLong(3) + rs.getLong(2);
+            return new long[]{rs.getLong(1), counted};
+        }
+    }
+
+    // Counts per candidate: all votes in the range, and those cast since recentFromMillis.
+    private class RangeCount extends RecursiveTask<Map<String, long[]>> {
+        private static final long serialVersionUID = 1L;
+        private final long from;
+        private final long to;
+        private final long recentFromMillis;
+
+        RangeCount(long from, long to, long recentFromMillis) {
+            this.from = from;
+            this.to = to;
+            this.recentFromMillis = recentFromMillis;
+        }
+
+        @Override
+        protected Map<String, long[]> compute() {
+            if (to - from < PARTITION_SIZE) {
+                return scan();
+            }
+            long middle = from + (to - from) / 2;
+            RangeCount left = new RangeCount(from, middle, recentFromMillis);
+            RangeCount right = new RangeCount(middle + 1, to, recentFromMillis);
+            left.fork();
+            Map<String, long[]> counts = right.compute();
+            left.join().forEach((candidate, votes) -> counts.merge(candidate, votes, RangeCount::add));
+            return counts;
+        }
+
+        private static long[] add(long[] a, long[] b) {
+            return new long[]{a[0] + b[0], a[1] + b[1]};
+        }
+
+        // The count is grouped per partition on the server so only one row per candidate crosses the wire.
+        private Map<String, long[]> scan() {
+            Map<String, long[]> counts = new HashMap<>();
+            String sql = "SELECT candidate_id, COUNT(*), COALESCE(SUM(vote_time >= ?), 0) FROM votes " +
+                         "WHERE election_id = ? AND id BETWEEN ? AND ? GROUP BY candidate_id";
+            try (Connection conn = router.getBackgroundConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql,
+                         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setTimestamp(1, new Timestamp(recentFromMillis));
+                pstmt.setString(2, electionId);
+                pstmt.setLong(3, from);
+                pstmt.setLong(4, to);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    counts.merge(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)}, RangeCount::add);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to recount votes " + from + "-" + to + ": " + e.getMessage());
+            }
+            return counts;
+        }
+    }
+}
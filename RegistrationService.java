@@ -0,0 +1,72 @@
+package Main;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RegistrationService {
+    private final Model model;
+    private final ThreadPoolExecutor executor;
+
+    public RegistrationService(Model model, int workers, int queueCapacity) {
+        this.model = model;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "registration-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CompletableFuture<Void> registerVoter(String name, String idNumber) throws VotingException {
+        return registerVoter(Model.DEFAULT_ELECTION, name, idNumber);
+    }
+
+    public CompletableFuture<Void> registerVoter(String electionId, String name, String idNumber) throws VotingException {
+        Model.validateElection(electionId);
+        Model.validateVoter(name, idNumber);
+        return submit(() -> model.registerVoter(electionId, name, idNumber));
+    }
+
+    public CompletableFuture<Void> registerCandidate(String name, String idNumber, String position) throws VotingException {
+        return registerCandidate(Model.DEFAULT_ELECTION, name, idNumber, position);
+    }
+
+    public CompletableFuture<Void> registerCandidate(String electionId, String name, String idNumber, String position)
+            throws VotingException {
+        Model.validateElection(electionId);
+        Model.validateCandidate(name, idNumber, position);
+        return submit(() -> model.registerCandidate(electionId, name, idNumber, position));
+    }
+
+    public int pending() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private CompletableFuture<Void> submit(Registration registration) throws VotingException {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    registration.run();
+                    result.complete(null);
+                } catch (VotingException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new VotingException("Registration is busy, please try again in a moment");
+        }
+        return result;
+    }
+
+    private interface Registration {
+        void run() throws VotingException;
+    }
+}
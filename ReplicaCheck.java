@@ -0,0 +1,109 @@
+package Main;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+// Runs Model against two independent database instances, one as the primary and one as a replica,
+// and checks where each call lands. The instances do not replicate, so data written through the
+// primary only shows up in routed reads if they fell back to it. Exits non-zero on any mismatch.
+//   java Main.ReplicaCheck --primary-url=jdbc:mysql://localhost:3306/voting_test
+//                          --replica-url=jdbc:mysql://localhost:3307/voting_test
+public class ReplicaCheck {
+    private final String primaryUrl;
+    private final String replicaUrl;
+    private final String user;
+    private final String password;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private boolean passed = true;
+
+    public ReplicaCheck(String primaryUrl, String replicaUrl, String user, String password) {
+        this.primaryUrl = primaryUrl;
+        this.replicaUrl = replicaUrl;
+        this.user = user;
+        this.password = password;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        ReplicaCheck check = new ReplicaCheck(
+                options.getOrDefault("primary-url", "jdbc:mysql://localhost:3306/voting_test"),
+                options.getOrDefault("replica-url", "jdbc:mysql://localhost:3307/voting_test"),
+                options.getOrDefault("user", "root"), options.getOrDefault("password", ""));
+        System.exit(check.run() ? 0 : 1);
+    }
+
+    public boolean run() throws Exception {
+        readsGoToReplica();
+        readsFallBackToPrimary();
+        System.out.println(passed ? "Replica checks: OK" : "Replica checks: FAILED");
+        return passed;
+    }
+
+    // Writes land on the primary only, and reporting reads see the replica's data, not the primary's.
+    private void readsGoToReplica() throws Exception {
+        String election = "replica-" + runId + "-1";
+        System.out.printf("reads go to the replica (election %s)%n", election);
+        Model primary = new Model(primaryUrl, user, password);
+        Model replica = new Model(replicaUrl, user, password);
+        Model routed = new Model(source(primaryUrl), List.of(source(replicaUrl)), 0);
+        try {
+            primary.ensureSchema();
+            replica.ensureSchema();
+            replica.createElection(election, "Replica check");
+            replica.registerCandidate(election, "Replica Candidate", "20000002", "President");
+
+            routed.createElection(election, "Replica check");
+            routed.registerCandidate(election, "Primary Candidate", "20000001", "President");
+            routed.registerVoter(election, "Primary Voter", "10000001");
+            routed.castVote(election, "10000001", "20000001", null);
+
+            expect("candidates written to the primary", "20000001", idNumbers(primary.getAllCandidates(election)));
+            expect("candidates written to the replica", "20000002", idNumbers(replica.getAllCandidates(election)));
+            expect("candidates read through the router", "20000002", idNumbers(routed.getAllCandidates(election)));
+            expect("votes read through the router", "0", Integer.toString(routed.getVoteHistory(election).size()));
+            expect("votes on the primary", "1", Integer.toString(primary.getVoteHistory(election).size()));
+        } finally {
+            routed.close();
+            replica.close();
+            primary.close();
+        }
+    }
+
+    // With the replica unreachable, reporting reads are served by the primary instead of failing.
+    private void readsFallBackToPrimary() throws Exception {
+        String election = "replica-" + runId + "-2";
+        System.out.printf("reads fall back to the primary (election %s)%n", election);
+        Model routed = new Model(source(primaryUrl),
+                List.of(source("jdbc:mysql://127.0.0.1:1/unreachable?connectTimeout=1000")), 0);
+        try {
+            routed.ensureSchema();
+            routed.createElection(election, "Replica check");
+            routed.registerCandidate(election, "Primary Candidate", "20000001", "President");
+            expect("candidates read with the replica down", "20000001", idNumbers(routed.getAllCandidates(election)));
+            expect("candidates read again once the replica is marked down", "20000001",
+                    idNumbers(routed.getAllCandidates(election)));
+        } finally {
+            routed.close();
+        }
+    }
+
+    private DataSource source(String url) {
+        return new DriverManagerDataSource(url, user, password);
+    }
+
+    private static String idNumbers(List<Model.Candidate> candidates) {
+        List<String> ids = new ArrayList<>();
+        for (Model.Candidate candidate : candidates) {
+            ids.add(candidate.getIdNumber());
+        }
+        Collections.sort(ids);
+        return String.join(",", ids);
+    }
+
+    private void expect(String what, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            System.out.printf("  MISMATCH %s: expected [%s], got [%s]%n", what, expected, actual);
+            passed = false;
+        }
+    }
+}
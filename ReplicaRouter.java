@@ -0,0 +1,116 @@
+package Main;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReplicaRouter {
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+    private static final long RETRY_DOWN_REPLICA_MILLIS = 5000;
+
+    private static class Replica {
+        private final DataSource dataSource;
+        private volatile long lagMillis = Long.MAX_VALUE;
+        private volatile long downUntil;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxStalenessMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService heartbeat;
+    private final DatabaseGuard guard = new DatabaseGuard();
+
+    // A maxStalenessMillis of zero or less disables lag checks, e.g. for independent local test instances.
+    public ReplicaRouter(DataSource primary, List<DataSource> replicas, long maxStalenessMillis) {
+        this.primary = primary;
+        this.maxStalenessMillis = maxStalenessMillis;
+        for (DataSource replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        if (this.replicas.isEmpty() || maxStalenessMillis <= 0) {
+            this.heartbeat = null;
+        } else {
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleWithFixedDelay(this::beat, HEARTBEAT_INTERVAL_MILLIS, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Connection getWriteConnection() throws SQLException {
+        return guard.open(primary, DatabaseGuard.Bulkhead.VOTING, true);
+    }
+
+    // Primary connections for recounts, ledger hashing and startup work, kept out of the voting bulkhead.
+    public Connection getBackgroundConnection() throws SQLException {
+        return guard.open(primary, DatabaseGuard.Bulkhead.REPORTING, true);
+    }
+
+    public boolean isPrimaryAvailable() {
+        return guard.isAvailable();
+    }
+
+    public Connection getReadConnection() throws SQLException {
+        int size = replicas.size();
+        for (int attempt = 0; attempt < size; attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), size));
+            if (!isUsable(replica)) {
+                continue;
+            }
+            try {
+                return guard.open(replica.dataSource, DatabaseGuard.Bulkhead.REPORTING, false);
+            } catch (SQLException e) {
+                replica.downUntil = System.currentTimeMillis() + RETRY_DOWN_REPLICA_MILLIS;
+            }
+        }
+        return guard.open(primary, DatabaseGuard.Bulkhead.REPORTING, true);
+    }
+
+    public void close() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    private boolean isUsable(Replica replica) {
+        if (replica.downUntil > System.currentTimeMillis()) {
+            return false;
+        }
+        return maxStalenessMillis <= 0 || replica.lagMillis <= maxStalenessMillis;
+    }
+
+    // Heartbeats go through the guard like any other background work, so they respect the reporting
+    // bulkhead and an open breaker instead of hammering a primary that is already down.
+    private void beat() {
+        long now = System.currentTimeMillis();
+        try (Connection conn = getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1")) {
+            pstmt.setLong(1, now);
+            pstmt.executeUpdate();
+        } catch (SQLException | DatabaseUnavailableException e) {
+            System.err.println("Replica heartbeat write failed: " + e.getMessage());
+        }
+        for (Replica replica : replicas) {
+            try (Connection conn = guard.open(replica.dataSource, DatabaseGuard.Bulkhead.REPORTING, false);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT beat_millis FROM replication_heartbeat WHERE id = 1")) {
+                replica.lagMillis = rs.next() ? System.currentTimeMillis() - rs.getLong(1) : Long.MAX_VALUE;
+            } catch (SQLException | DatabaseUnavailableException e) {
+                replica.lagMillis = Long.MAX_VALUE;
+            }
+        }
+    }
+}
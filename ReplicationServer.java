@@ -0,0 +1,310 @@
+package Main;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Ships every committed vote to connected standbys. A standby that connects is caught up from the
+// votes table while live votes queue behind the catch-up, then follows the live stream; the standby
+// applies each (election, voter) once, so overlap between the two is harmless.
+public class ReplicationServer implements VoteListener {
+    static final int MAGIC = 0x56525031;
+    static final byte BATCH = 1;
+    static final byte HEARTBEAT = 2;
+    static final byte ELECTION = 3;
+    static final byte CAUGHT_UP = 4;
+    static final long HEARTBEAT_MILLIS = 100;
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 1 << 20;
+    // Votes commit within seconds of their timestamp, so re-sending this much history on a reconnect
+    // covers any vote that committed after the standby's last one but carries an earlier ID.
+    private static final long RESUME_OVERLAP_MILLIS = 30_000;
+
+    static class Event {
+        final String electionId;
+        final long seq;
+        final int voterId;
+        final int candidateId;
+        final long timestampMillis;
+
+        Event(String electionId, long seq, int voterId, int candidateId, long timestampMillis) {
+            this.electionId = electionId;
+            this.seq = seq;
+            this.voterId = voterId;
+            this.candidateId = candidateId;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    private final Model model;
+    private final ServerSocket serverSocket;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat;
+    private volatile boolean running;
+
+    public ReplicationServer(Model model, int port) throws IOException {
+        this.model = model;
+        this.serverSocket = new ServerSocket(port);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        model.addVoteListener(this);
+        heartbeat.scheduleAtFixedRate(() -> sessions.forEach(Session::heartbeat),
+                HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        Thread acceptor = new Thread(this::accept, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Standbys receive everything already queued before their connection is closed.
+    public synchronized void stop() {
+        running = false;
+        model.removeVoteListener(this);
+        heartbeat.shutdownNow();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Replication server did not close cleanly: " + e.getMessage());
+        }
+        for (Session session : sessions) {
+            session.awaitDrained();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getStandbyCount() {
+        return sessions.size();
+    }
+
+    // Highest vote ID every connected standby has acknowledged, or -1 with no standby connected.
+    public long getAcknowledgedSeq() {
+        long acknowledged = Long.MAX_VALUE;
+        for (Session session : sessions) {
+            acknowledged = Math.min(acknowledged, session.acknowledgedSeq);
+        }
+        return sessions.isEmpty() ? -1 : acknowledged;
+    }
+
+    @Override
+    public void onVoteCast(String electionId, long voteId, String voterId, String candidateId, String position,
+                           long timestampMillis) {
+        Event event = new Event(electionId, voteId, Model.parseId(voterId), Model.parseId(candidateId), timestampMillis);
+        for (Session session : sessions) {
+            session.offer(event);
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Session session = new Session(socket);
+                Thread thread = new Thread(session, "replication-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private class Session implements Runnable {
+        private final Socket socket;
+        private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private final Map<String, Integer> electionCodes = new HashMap<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private DataOutputStream out;
+        private long lastSeq;
+        private long lastMillis;
+        private volatile long acknowledgedSeq;
+        private volatile boolean closed;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        // A standby that falls this far behind is dropped; it reconnects and catches up from the table.
+        void offer(Event event) {
+            if (!queue.offer(event)) {
+                System.err.println("Standby " + socket.getRemoteSocketAddress() + " fell behind, disconnecting");
+                close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("not a standby");
+                }
+                long resumeSeq = in.readLong();
+                long resumeMillis = in.readLong();
+                startAckReader(in);
+                sessions.add(this);
+
+                List<Event> batch = new ArrayList<>(BATCH_SIZE);
+                long fromMillis = resumeSeq == 0 ? 0 : resumeMillis - RESUME_OVERLAP_MILLIS;
+                try {
+                    model.scanVotes(fromMillis, (electionId, voteId, voterId, candidateId, position, millis) -> {
+                        batch.add(new Event(electionId, voteId, Model.parseId(voterId), Model.parseId(candidateId), millis));
+                        if (batch.size() == BATCH_SIZE) {
+                            send(batch);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                send(batch);
+                synchronized (this) {
+                    out.writeByte(CAUGHT_UP);
+                    out.flush();
+                }
+
+                while (!closed && (running || !queue.isEmpty())) {
+                    Event event = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        continue;
+                    }
+                    batch.add(event);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    send(batch);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    System.err.println("Standby " + socket.getRemoteSocketAddress() + " disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sessions.remove(this);
+                close();
+                finished.countDown();
+            }
+        }
+
+        // Batches are written back to back without waiting for acknowledgements.
+        private synchronized void send(List<Event> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                for (Event event : batch) {
+                    Integer code = electionCodes.get(event.electionId);
+                    if (code == null) {
+                        code = electionCodes.size();
+                        electionCodes.put(event.electionId, code);
+                        out.writeByte(ELECTION);
+                        out.writeInt(code);
+                        out.writeUTF(event.electionId);
+                    }
+                }
+                out.writeByte(BATCH);
+                out.writeInt(batch.size());
+                for (Event event : batch) {
+                    writeVarLong(out, zigzag(event.seq - lastSeq));
+                    writeVarLong(out, electionCodes.get(event.electionId));
+                    out.writeInt(event.voterId);
+                    out.writeInt(event.candidateId);
+                    writeVarLong(out, zigzag(event.timestampMillis - lastMillis));
+                    lastSeq = event.seq;
+                    lastMillis = event.timestampMillis;
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            batch.clear();
+        }
+
+        synchronized void heartbeat() {
+            if (out == null || closed) {
+                return;
+            }
+            try {
+                out.writeByte(HEARTBEAT);
+                out.writeLong(System.currentTimeMillis());
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void startAckReader(DataInputStream in) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!closed) {
+                        acknowledgedSeq = in.readLong();
+                    }
+                } catch (IOException e) {
+                    close();
+                }
+            }, "replication-ack-" + socket.getRemoteSocketAddress());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void awaitDrained() {
+            try {
+                finished.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already gone.
+            }
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
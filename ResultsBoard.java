@@ -0,0 +1,89 @@
+package Main;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+// Read-only results display for venue screens. It renders from the results feed file a running
+// VotingSystem publishes (-Dvoting.resultsFeed.dir), so it needs no database connection.
+public class ResultsBoard {
+    private static final long STALE_MILLIS = 10_000;
+
+    private final Path file;
+    private final JTextArea resultsArea = new JTextArea();
+    private final JLabel statusLabel = new JLabel(" ");
+    private ResultsFeed.Reader reader;
+    private long shownSeq = -1;
+    private long publishedAt;
+
+    public ResultsBoard(Path file) {
+        this.file = file;
+    }
+
+    private JFrame createFrame(String electionId) {
+        JFrame frame = new JFrame("Election Results - " + electionId);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        resultsArea.setEditable(false);
+        resultsArea.setFont(new Font("Monospaced", Font.PLAIN, 16));
+        statusLabel.setBorder(new EmptyBorder(5, 10, 5, 10));
+        frame.add(new JScrollPane(resultsArea), BorderLayout.CENTER);
+        frame.add(statusLabel, BorderLayout.SOUTH);
+        frame.setSize(800, 600);
+        frame.setLocationRelativeTo(null);
+        return frame;
+    }
+
+    // Runs on the EDT; a poll that finds the same sequence number costs one memory read.
+    private void poll() {
+        if (reader == null) {
+            try {
+                reader = new ResultsFeed.Reader(file);
+            } catch (IOException e) {
+                statusLabel.setText("Waiting for results feed " + file);
+                return;
+            }
+        }
+        if (reader.getSeq() != shownSeq) {
+            ResultsFeed.Snapshot snapshot = reader.read();
+            if (snapshot != null) {
+                // Every publish moves the sequence; the text only changes when a vote came in.
+                String text = View.formatResults(snapshot.getResults());
+                if (!text.equals(resultsArea.getText())) {
+                    resultsArea.setText(text);
+                }
+                shownSeq = snapshot.getSeq();
+                publishedAt = snapshot.getPublishedAtMillis();
+            }
+        }
+        showAge();
+    }
+
+    private void showAge() {
+        if (shownSeq < 0) {
+            statusLabel.setText("No results published yet");
+            return;
+        }
+        long age = System.currentTimeMillis() - publishedAt;
+        statusLabel.setText(age > STALE_MILLIS
+                ? String.format("Results may be out of date: last updated %d s ago", age / 1000)
+                : "Live");
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        String electionId = options.getOrDefault("election", Model.DEFAULT_ELECTION);
+        Path dir = Paths.get(options.getOrDefault("dir", System.getProperty("voting.resultsFeed.dir", ".")));
+        int pollMillis = Integer.parseInt(options.getOrDefault("poll-millis", "250"));
+        ResultsBoard board = new ResultsBoard(ResultsFeed.fileFor(dir, electionId));
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = board.createFrame(electionId);
+            new Timer(pollMillis, e -> board.poll()).start();
+            board.poll();
+            frame.setVisible(true);
+        });
+    }
+}
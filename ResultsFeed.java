@@ -0,0 +1,199 @@
+package Main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Fixed layout of the memory-mapped results file. One ResultsFeedPublisher rewrites it in place and
+// any number of display processes map it read-only. The sequence number in the header is odd while
+// a snapshot is being written, so a reader that sees the same even number before and after copying
+// has a consistent snapshot without taking a lock or touching the database.
+public class ResultsFeed {
+    static final int MAGIC = 0x52534c54;
+    static final int LAYOUT_VERSION = 1;
+
+    // Header: magic, layout, seq, published-at, registered, voted, record count, capacity, election.
+    static final int HEADER_BYTES = 128;
+    static final int OFF_MAGIC = 0;
+    static final int OFF_LAYOUT = 4;
+    static final int OFF_SEQ = 8;
+    static final int OFF_PUBLISHED_AT = 16;
+    static final int OFF_REGISTERED = 24;
+    static final int OFF_VOTED = 28;
+    static final int OFF_RECORDS = 32;
+    static final int OFF_CAPACITY = 36;
+    static final int OFF_ELECTION = 40;
+    static final int ELECTION_BYTES = 66;
+
+    // One record per candidate, ordered by position then votes, as getResults returns them.
+    static final int RECORD_BYTES = 160;
+    static final int REC_POSITION = 0;
+    static final int REC_NAME = 64;
+    static final int REC_ID_NUMBER = 128;
+    static final int REC_VOTES = 144;
+    static final int REC_POSITION_TOTAL = 148;
+    static final int TEXT_BYTES = 64;
+    static final int ID_BYTES = 16;
+
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_READ_ATTEMPTS = 10_000;
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    public static class Snapshot {
+        private final String electionId;
+        private final long seq;
+        private final long publishedAtMillis;
+        private final Model.ElectionResults results;
+
+        Snapshot(String electionId, long seq, long publishedAtMillis, Model.ElectionResults results) {
+            this.electionId = electionId;
+            this.seq = seq;
+            this.publishedAtMillis = publishedAtMillis;
+            this.results = results;
+        }
+
+        public String getElectionId() { return electionId; }
+        public long getSeq() { return seq; }
+        public long getPublishedAtMillis() { return publishedAtMillis; }
+        public Model.ElectionResults getResults() { return results; }
+    }
+
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        public Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(OFF_MAGIC) != MAGIC
+                    || buffer.getInt(OFF_LAYOUT) != LAYOUT_VERSION) {
+                channel.close();
+                throw new IOException("Not a results feed: " + file);
+            }
+            if (buffer.capacity() < size(buffer.getInt(OFF_CAPACITY))) {
+                channel.close();
+                throw new IOException("Results feed is truncated: " + file);
+            }
+        }
+
+        // Cheap enough to poll often: displays only copy a snapshot when this moves.
+        public long getSeq() {
+            return (long) LONGS.getAcquire(buffer, OFF_SEQ);
+        }
+
+        // Null until the first snapshot is published, or while the publisher is stuck mid-write.
+        public Snapshot read() {
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+                long before = (long) LONGS.getAcquire(buffer, OFF_SEQ);
+                if (before == 0) {
+                    return null;
+                }
+                if ((before & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                Snapshot snapshot = copy(before);
+                VarHandle.loadLoadFence();
+                if ((long) LONGS.getVolatile(buffer, OFF_SEQ) == before && snapshot != null) {
+                    return snapshot;
+                }
+            }
+            return null;
+        }
+
+        // Anything read here may be torn; read() discards it unless the sequence number held still.
+        private Snapshot copy(long seq) {
+            int records = buffer.getInt(OFF_RECORDS);
+            if (records < 0 || records > buffer.getInt(OFF_CAPACITY)) {
+                return null;
+            }
+            Model.ElectionResults results = new Model.ElectionResults(buffer.getInt(OFF_REGISTERED), buffer.getInt(OFF_VOTED));
+            Model.PositionResult current = null;
+            for (int i = 0; i < records; i++) {
+                int base = HEADER_BYTES + i * RECORD_BYTES;
+                String position = getString(buffer, base + REC_POSITION, TEXT_BYTES);
+                if (position == null) {
+                    return null;
+                }
+                if (current == null || !current.getPosition().equals(position)) {
+                    current = new Model.PositionResult(position, buffer.getInt(base + REC_POSITION_TOTAL));
+                    results.getPositions().add(current);
+                }
+                String idNumber = getString(buffer, base + REC_ID_NUMBER, ID_BYTES);
+                String name = getString(buffer, base + REC_NAME, TEXT_BYTES);
+                if (idNumber == null || name == null) {
+                    return null;
+                }
+                current.getCandidates().add(new Model.CandidateResult(idNumber, name,
+                        buffer.getInt(base + REC_VOTES), current.getTotalVotes()));
+            }
+            String electionId = getString(buffer, OFF_ELECTION, ELECTION_BYTES);
+            if (electionId == null) {
+                return null;
+            }
+            return new Snapshot(electionId, seq, buffer.getLong(OFF_PUBLISHED_AT), results);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static Path fileFor(Path dir, String electionId) {
+        return dir.resolve("results-" + electionId + ".feed");
+    }
+
+    static long size(int capacity) {
+        return HEADER_BYTES + (long) capacity * RECORD_BYTES;
+    }
+
+    static long getSeq(ByteBuffer buffer) {
+        return (long) LONGS.getVolatile(buffer, OFF_SEQ);
+    }
+
+    // An odd number marks the snapshot as being written; the fence keeps the body writes after it.
+    static void beginWrite(ByteBuffer buffer, long seq) {
+        LONGS.setVolatile(buffer, OFF_SEQ, seq);
+        VarHandle.storeStoreFence();
+    }
+
+    static void endWrite(ByteBuffer buffer, long seq) {
+        LONGS.setRelease(buffer, OFF_SEQ, seq);
+    }
+
+    // Length-prefixed UTF-8, cut at a character boundary when it does not fit the field.
+    static void putString(ByteBuffer buffer, int offset, int fieldBytes, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, fieldBytes - 2);
+        while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        buffer.putShort(offset, (short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + 2 + i, bytes[i]);
+        }
+    }
+
+    static String getString(ByteBuffer buffer, int offset, int fieldBytes) {
+        int length = buffer.getShort(offset);
+        if (length < 0 || length > fieldBytes - 2) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
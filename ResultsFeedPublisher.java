@@ -0,0 +1,118 @@
+package Main;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs one getResults query per interval and writes it into the results feed file, however many
+// displays read the file. Only one publisher may own a file at a time.
+public class ResultsFeedPublisher {
+    private final Model model;
+    private final String electionId;
+    private final int capacity;
+    private final RandomAccessFile file;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final ScheduledExecutorService scheduler;
+    private long seq;
+    private boolean warnedTruncated;
+
+    public ResultsFeedPublisher(Model model, Path path, String electionId, int capacity) throws IOException {
+        this.model = model;
+        this.electionId = electionId;
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        FileChannel channel = file.getChannel();
+        this.lock = channel.tryLock();
+        if (lock == null) {
+            file.close();
+            throw new IOException("Another publisher owns " + path);
+        }
+        file.setLength(ResultsFeed.size(capacity));
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, ResultsFeed.size(capacity));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Readers that kept the file open across a restart see the sequence keep rising.
+        long previous = buffer.getInt(ResultsFeed.OFF_MAGIC) == ResultsFeed.MAGIC ? ResultsFeed.getSeq(buffer) : 0;
+        seq = previous == 0 ? 0 : (previous + 2) & ~1L;
+        ResultsFeed.beginWrite(buffer, seq + 1);
+        buffer.putInt(ResultsFeed.OFF_MAGIC, ResultsFeed.MAGIC);
+        buffer.putInt(ResultsFeed.OFF_LAYOUT, ResultsFeed.LAYOUT_VERSION);
+        buffer.putInt(ResultsFeed.OFF_CAPACITY, capacity);
+        buffer.putInt(ResultsFeed.OFF_RECORDS, 0);
+        ResultsFeed.putString(buffer, ResultsFeed.OFF_ELECTION, ResultsFeed.ELECTION_BYTES, electionId);
+        ResultsFeed.endWrite(buffer, seq);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "results-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                publish();
+            } catch (RuntimeException e) {
+                // Displays keep the last snapshot; its publish time shows how old it is.
+                System.err.println("Results feed not updated: " + e.getMessage());
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void publish() {
+        publish(model.getResults(electionId));
+    }
+
+    synchronized void publish(Model.ElectionResults results) {
+        ResultsFeed.beginWrite(buffer, seq + 1);
+        int records = 0;
+        int available = 0;
+        for (Model.PositionResult position : results.getPositions()) {
+            for (Model.CandidateResult candidate : position.getCandidates()) {
+                available++;
+                if (records == capacity) {
+                    continue;
+                }
+                int base = ResultsFeed.HEADER_BYTES + records * ResultsFeed.RECORD_BYTES;
+                ResultsFeed.putString(buffer, base + ResultsFeed.REC_POSITION, ResultsFeed.TEXT_BYTES, position.getPosition());
+                ResultsFeed.putString(buffer, base + ResultsFeed.REC_NAME, ResultsFeed.TEXT_BYTES, candidate.getName());
+                ResultsFeed.putString(buffer, base + ResultsFeed.REC_ID_NUMBER, ResultsFeed.ID_BYTES, candidate.getIdNumber());
+                buffer.putInt(base + ResultsFeed.REC_VOTES, candidate.getVotes());
+                buffer.putInt(base + ResultsFeed.REC_POSITION_TOTAL, position.getTotalVotes());
+                records++;
+            }
+        }
+        buffer.putInt(ResultsFeed.OFF_RECORDS, records);
+        buffer.putInt(ResultsFeed.OFF_REGISTERED, results.getRegistered());
+        buffer.putInt(ResultsFeed.OFF_VOTED, results.getVoted());
+        buffer.putLong(ResultsFeed.OFF_PUBLISHED_AT, System.currentTimeMillis());
+        seq += 2;
+        ResultsFeed.endWrite(buffer, seq);
+        if (available > capacity && !warnedTruncated) {
+            warnedTruncated = true;
+            System.err.println("Results feed holds " + capacity + " of " + available + " candidates");
+        }
+    }
+
+    public String getElectionId() {
+        return electionId;
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            lock.release();
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Results feed did not close cleanly: " + e.getMessage());
+        }
+    }
+}
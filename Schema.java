@@ -0,0 +1,191 @@
+package Main;
+
+import java.sql.*;
+
+final class Schema {
+    private Schema() {
+    }
+
+    static void ensure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS voters (" +
+                    "election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "', " +
+                    "id_number VARCHAR(8) NOT NULL, " +
+                    "name VARCHAR(100) NOT NULL, " +
+                    "person_id VARCHAR(36) NOT NULL, " +
+                    "has_voted BOOLEAN NOT NULL DEFAULT FALSE, " +
+                    "PRIMARY KEY (election_id, id_number))");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS candidates (" +
+                    "election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "', " +
+                    "id_number VARCHAR(8) NOT NULL, " +
+                    "name VARCHAR(100) NOT NULL, " +
+                    "person_id VARCHAR(36) NOT NULL, " +
+                    "position VARCHAR(100) NOT NULL, " +
+                    "vote_count INT NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY (election_id, id_number))");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS votes (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "', " +
+                    "voter_id VARCHAR(8) NOT NULL, " +
+                    "candidate_id VARCHAR(8) NOT NULL, " +
+                    "vote_time TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            // Databases from before elections existed keep all their rows in the default election.
+            partitionByElection(conn, stmt, "voters", "id_number");
+            partitionByElection(conn, stmt, "candidates", "id_number");
+            if (!hasColumn(conn, "votes", "election_id")) {
+                stmt.executeUpdate("ALTER TABLE votes ADD COLUMN election_id VARCHAR(64) NOT NULL DEFAULT '" +
+                        Model.DEFAULT_ELECTION + "'");
+            }
+
+            if (!hasTable(conn, "position_totals")) {
+                stmt.executeUpdate("CREATE TABLE position_totals (" +
+                        "election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "', " +
+                        "position VARCHAR(100) NOT NULL, " +
+                        "total_votes INT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (election_id, position))");
+                stmt.executeUpdate("INSERT INTO position_totals (election_id, position, total_votes) " +
+                        "SELECT election_id, position, SUM(vote_count) FROM candidates GROUP BY election_id, position");
+            }
+            partitionByElection(conn, stmt, "position_totals", "position");
+            if (!hasTable(conn, "turnout_totals")) {
+                stmt.executeUpdate("CREATE TABLE turnout_totals (" +
+                        "scope VARCHAR(64) NOT NULL, " +
+                        "slot TINYINT NOT NULL, " +
+                        "registered INT NOT NULL DEFAULT 0, " +
+                        "voted INT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (scope, slot))");
+                stmt.executeUpdate("INSERT INTO turnout_totals (scope, slot, registered, voted) " +
+                        "SELECT election_id, 0, COUNT(*), COALESCE(SUM(has_voted), 0) FROM voters GROUP BY election_id");
+            }
+            if (!hasTable(conn, "elections")) {
+                stmt.executeUpdate("CREATE TABLE elections (" +
+                        "election_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                        "name VARCHAR(100) NOT NULL, " +
+                        "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+                stmt.executeUpdate("INSERT INTO elections (election_id, name) VALUES ('" +
+                        Model.DEFAULT_ELECTION + "', 'General Election')");
+            }
+            if (!hasColumn(conn, "elections", "closed_at")) {
+                stmt.executeUpdate("ALTER TABLE elections ADD COLUMN closed_at TIMESTAMP NULL");
+            }
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS vote_archives (" +
+                    "file_name VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                    "election_id VARCHAR(64) NOT NULL, " +
+                    "first_vote_id BIGINT NOT NULL, " +
+                    "last_vote_id BIGINT NOT NULL, " +
+                    "row_count INT NOT NULL, " +
+                    "min_time_millis BIGINT NOT NULL, " +
+                    "max_time_millis BIGINT NOT NULL, " +
+                    "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                    "INDEX idx_vote_archives_election (election_id, first_vote_id))");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS vote_archive_files (" +
+                    "file_name VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                    "data LONGBLOB NOT NULL)");
+            if (!hasColumn(conn, "candidates", "catalog_version")) {
+                stmt.executeUpdate("ALTER TABLE candidates ADD COLUMN catalog_version BIGINT NOT NULL DEFAULT 0");
+                stmt.executeUpdate("CREATE INDEX idx_candidates_catalog ON candidates (election_id, catalog_version)");
+            }
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS catalog_versions (" +
+                    "election_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                    "version BIGINT NOT NULL DEFAULT 0)");
+            stmt.executeUpdate("INSERT INTO catalog_versions (election_id, version) " +
+                    "SELECT e.election_id, 0 FROM elections e " +
+                    "LEFT JOIN catalog_versions v ON v.election_id = e.election_id WHERE v.election_id IS NULL");
+            stmt.executeUpdate("INSERT INTO turnout_totals (scope, slot, registered, voted) " +
+                    "SELECT e.election_id, s.slot, 0, 0 FROM elections e CROSS JOIN (" + turnoutSlots() + ") s " +
+                    "LEFT JOIN turnout_totals t ON t.scope = e.election_id AND t.slot = s.slot WHERE t.scope IS NULL");
+            if (!hasTable(conn, "replication_heartbeat")) {
+                stmt.executeUpdate("CREATE TABLE replication_heartbeat (" +
+                        "id INT NOT NULL PRIMARY KEY, " +
+                        "beat_millis BIGINT NOT NULL)");
+                stmt.executeUpdate("INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0)");
+            }
+
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS vote_ledger (" +
+                    "seq BIGINT NOT NULL PRIMARY KEY, " +
+                    "vote_id BIGINT NOT NULL UNIQUE, " +
+                    "election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "', " +
+                    "voter_id VARCHAR(8) NOT NULL, " +
+                    "candidate_id VARCHAR(8) NOT NULL, " +
+                    "vote_time_millis BIGINT NOT NULL, " +
+                    "prev_hash CHAR(64) NOT NULL, " +
+                    "hash CHAR(64) NOT NULL)");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ledger_checkpoints (" +
+                    "block_no BIGINT NOT NULL PRIMARY KEY, " +
+                    "first_seq BIGINT NOT NULL, " +
+                    "last_seq BIGINT NOT NULL, " +
+                    "last_hash CHAR(64) NOT NULL, " +
+                    "merkle_root CHAR(64) NOT NULL, " +
+                    "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+
+            if (!hasIndex(conn, "votes", "idx_votes_candidate")) {
+                stmt.executeUpdate("CREATE INDEX idx_votes_candidate ON votes (candidate_id, id)");
+            }
+            if (!hasColumn(conn, "vote_ledger", "election_id")) {
+                stmt.executeUpdate("ALTER TABLE vote_ledger ADD COLUMN election_id VARCHAR(64) NOT NULL DEFAULT '" +
+                        Model.DEFAULT_ELECTION + "'");
+            }
+            if (!hasIndex(conn, "votes", "idx_votes_election")) {
+                stmt.executeUpdate("CREATE INDEX idx_votes_election ON votes (election_id, id)");
+            }
+            if (!hasIndex(conn, "votes", "idx_votes_election_candidate")) {
+                stmt.executeUpdate("CREATE INDEX idx_votes_election_candidate ON votes (election_id, candidate_id, id)");
+            }
+            if (!hasIndex(conn, "votes", "idx_votes_time")) {
+                stmt.executeUpdate("CREATE INDEX idx_votes_time ON votes (vote_time)");
+            }
+            if (!hasColumn(conn, "votes", "request_id")) {
+                stmt.executeUpdate("ALTER TABLE votes ADD COLUMN request_id VARCHAR(64) NULL");
+                stmt.executeUpdate("CREATE UNIQUE INDEX uk_votes_request_id ON votes (request_id)");
+            }
+        }
+    }
+
+    private static void partitionByElection(Connection conn, Statement stmt, String table, String key) throws SQLException {
+        if (!hasColumn(conn, table, "election_id")) {
+            stmt.executeUpdate("ALTER TABLE " + table + " " +
+                    "ADD COLUMN election_id VARCHAR(64) NOT NULL DEFAULT '" + Model.DEFAULT_ELECTION + "' FIRST, " +
+                    "DROP PRIMARY KEY, ADD PRIMARY KEY (election_id, " + key + ")");
+        }
+    }
+
+    // A derived table of the slot numbers 0 .. TURNOUT_SLOTS - 1, one row each.
+    private static String turnoutSlots() {
+        StringBuilder sql = new StringBuilder("SELECT 0 AS slot");
+        for (int slot = 1; slot < Model.TURNOUT_SLOTS; slot++) {
+            sql.append(" UNION ALL SELECT ").append(slot);
+        }
+        return sql.toString();
+    }
+
+    static boolean hasTable(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getTables(conn.getCatalog(), null, identifier(meta, table), null)) {
+            return rs.next();
+        }
+    }
+
+    static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, identifier(meta, table), false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getColumns(conn.getCatalog(), null,
+                identifier(meta, table), identifier(meta, column))) {
+            return rs.next();
+        }
+    }
+
+    private static String identifier(DatabaseMetaData meta, String name) throws SQLException {
+        return meta.storesUpperCaseIdentifiers() ? name.toUpperCase() : name;
+    }
+}
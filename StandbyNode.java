@@ -0,0 +1,207 @@
+package Main;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Follows a ReplicationServer and keeps each election's tally and voted set in memory. When the
+// primary has been silent for the takeover timeout the standby stops following and becomes active,
+// handing its warm state to the takeover handlers.
+public class StandbyNode {
+    public interface TakeoverHandler {
+        void onTakeover(StandbyNode standby, long silentMillis);
+    }
+
+    public static class ElectionTally {
+        private final BitSet voted = new BitSet();
+        private final Map<String, Long> votes = new TreeMap<>();
+
+        // A voter counts once per election however often the vote is replayed.
+        synchronized boolean apply(int voterId, int candidateId) {
+            if (voted.get(voterId)) {
+                return false;
+            }
+            voted.set(voterId);
+            votes.merge(Model.formatId(candidateId), 1L, Long::sum);
+            return true;
+        }
+
+        public synchronized boolean hasVoted(int voterId) { return voted.get(voterId); }
+        public synchronized int votedCount() { return voted.cardinality(); }
+        public synchronized Map<String, Long> getVotes() { return new TreeMap<>(votes); }
+    }
+
+    private static final long RECONNECT_MILLIS = 50;
+
+    private final String host;
+    private final int port;
+    private final long takeoverMillis;
+    private final Map<String, ElectionTally> tallies = new ConcurrentHashMap<>();
+    private final List<TakeoverHandler> handlers = new CopyOnWriteArrayList<>();
+    private volatile long lastSeq;
+    private volatile long lastMillis;
+    private volatile long applied;
+    private volatile long duplicates;
+    private volatile boolean caughtUp;
+    private volatile boolean active;
+    private volatile boolean stopped;
+    private volatile long lastHeard;
+
+    public StandbyNode(String host, int port, long takeoverMillis) {
+        this.host = host;
+        this.port = port;
+        this.takeoverMillis = takeoverMillis;
+    }
+
+    public void addTakeoverHandler(TakeoverHandler handler) {
+        handlers.add(handler);
+    }
+
+    // Blocks until the standby takes over or is stopped.
+    public void run() {
+        lastHeard = System.currentTimeMillis();
+        boolean everConnected = false;
+        while (!stopped) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), (int) Math.max(1, takeoverMillis));
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout((int) takeoverMillis);
+                everConnected = true;
+                lastHeard = System.currentTimeMillis();
+                follow(socket);
+            } catch (SocketTimeoutException e) {
+                // Connected but silent: the primary is hung, so there is no point reconnecting.
+                if (everConnected) {
+                    takeOver();
+                    return;
+                }
+            } catch (IOException e) {
+                caughtUp = false;
+            }
+            // A primary that never came up is waited for; one that went away is taken over from.
+            if (everConnected && System.currentTimeMillis() - lastHeard >= takeoverMillis) {
+                takeOver();
+                return;
+            }
+            sleep(RECONNECT_MILLIS);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    private void follow(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(ReplicationServer.MAGIC);
+        out.writeLong(lastSeq);
+        out.writeLong(lastMillis);
+        out.flush();
+
+        Map<Integer, String> elections = new HashMap<>();
+        long seq = 0;
+        long millis = 0;
+        while (!stopped) {
+            byte type = in.readByte();
+            lastHeard = System.currentTimeMillis();
+            switch (type) {
+                case ReplicationServer.HEARTBEAT:
+                    in.readLong();
+                    break;
+                case ReplicationServer.ELECTION:
+                    elections.put(in.readInt(), in.readUTF());
+                    break;
+                case ReplicationServer.CAUGHT_UP:
+                    caughtUp = true;
+                    break;
+                case ReplicationServer.BATCH:
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        seq += ReplicationServer.unzigzag(ReplicationServer.readVarLong(in));
+                        String electionId = elections.get((int) ReplicationServer.readVarLong(in));
+                        int voterId = in.readInt();
+                        int candidateId = in.readInt();
+                        millis += ReplicationServer.unzigzag(ReplicationServer.readVarLong(in));
+                        apply(electionId, seq, voterId, candidateId, millis);
+                    }
+                    out.writeLong(lastSeq);
+                    out.flush();
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame " + type);
+            }
+        }
+    }
+
+    private void apply(String electionId, long seq, int voterId, int candidateId, long millis) {
+        if (tallies.computeIfAbsent(electionId, id -> new ElectionTally()).apply(voterId, candidateId)) {
+            applied++;
+        } else {
+            duplicates++;
+        }
+        if (seq > lastSeq) {
+            lastSeq = seq;
+            lastMillis = millis;
+        }
+    }
+
+    private void takeOver() {
+        active = true;
+        long silent = System.currentTimeMillis() - lastHeard;
+        for (TakeoverHandler handler : handlers) {
+            try {
+                handler.onTakeover(this, silent);
+            } catch (RuntimeException e) {
+                System.err.println("Takeover handler failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isActive() { return active; }
+    public boolean isCaughtUp() { return caughtUp; }
+    public long getLastSeq() { return lastSeq; }
+    public long getApplied() { return applied; }
+    public long getDuplicates() { return duplicates; }
+    public Set<String> getElections() { return new TreeSet<>(tallies.keySet()); }
+    public ElectionTally getTally(String electionId) { return tallies.get(electionId); }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        StandbyNode standby = new StandbyNode(options.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(options.getOrDefault("port", "7070")),
+                Long.parseLong(options.getOrDefault("takeover-millis", "500")));
+        standby.addTakeoverHandler((node, silentMillis) -> {
+            System.out.printf("Primary silent for %d ms, standby is now active at vote %d%n", silentMillis, node.getLastSeq());
+            for (String electionId : node.getElections()) {
+                ElectionTally tally = node.getTally(electionId);
+                System.out.printf("Election %s: %d voters have voted%n", electionId, tally.votedCount());
+                tally.getVotes().forEach((candidate, votes) -> System.out.printf("  %s %d%n", candidate, votes));
+            }
+        });
+        Thread status = new Thread(() -> {
+            while (!standby.isActive()) {
+                sleep(5_000);
+                if (!standby.isActive()) {
+                    System.out.printf("Standby: %d votes applied, %d duplicates, at vote %d%s%n", standby.getApplied(),
+                            standby.getDuplicates(), standby.getLastSeq(), standby.isCaughtUp() ? "" : " (catching up)");
+                }
+            }
+        }, "standby-status");
+        status.setDaemon(true);
+        status.start();
+        standby.run();
+    }
+}
@@ -5,15 +5,23 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 public class View extends JFrame {
     private Controller controller;
     private final CardLayout cardLayout;
     private final JPanel mainPanel;
+    private final JLabel statusLabel;
+    private final Map<String, Supplier<JPanel>> panelFactories = new HashMap<>();
+    private final Map<String, JPanel> panels = new HashMap<>();
     private static final Color PRIMARY_COLOR = new Color(33, 150, 243);
     private static final Color SECONDARY_COLOR = new Color(240, 240, 240);
     private static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 24);
@@ -27,37 +35,60 @@ public class View extends JFrame {
         setLocationRelativeTo(null);
         setMinimumSize(new Dimension(600, 400));
 
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
         cardLayout = new CardLayout();
         mainPanel = new JPanel(cardLayout);
         mainPanel.setBackground(Color.WHITE);
 
-        mainPanel.add(createTitledPanel(createMenuPanel(), "Main Menu"), "Menu");
-        mainPanel.add(createTitledPanel(createVoterRegistrationPanel(), "Voter Registration"), "Voter");
-        mainPanel.add(createTitledPanel(createCandidateRegistrationPanel(), "Candidate Registration"), "Candidate");
-        mainPanel.add(createTitledPanel(createVotePanel(), "Cast Vote"), "Vote");
-        mainPanel.add(createTitledPanel(createResultsPanel(), "Election Results"), "Results");
-        mainPanel.add(createTitledPanel(createAdminLoginPanel(), "Admin Login"), "AdminLogin");
-        mainPanel.add(createTitledPanel(createAdminMenuPanel(), "Admin Dashboard"), "AdminMenu");
-        mainPanel.add(createTitledPanel(createVotersPanel(), "Voter Information"), "Voters");
-        mainPanel.add(createTitledPanel(createCandidatesPanel(), "Candidate Information"), "Candidates");
-        mainPanel.add(createTitledPanel(createVoteHistoryPanel(), "Vote History"), "VoteHistory");
-        mainPanel.add(createTitledPanel(createCandidatesViewPanel(), "View Candidates"), "CandidatesView");
+        registerPanel("Menu", "Main Menu", this::createMenuPanel);
+        registerPanel("Voter", "Voter Registration", this::createVoterRegistrationPanel);
+        registerPanel("Candidate", "Candidate Registration", this::createCandidateRegistrationPanel);
+        registerPanel("Vote", "Cast Vote", this::createVotePanel);
+        registerPanel("Results", "Election Results", this::createResultsPanel);
+        registerPanel("AdminLogin", "Admin Login", this::createAdminLoginPanel);
+        registerPanel("AdminMenu", "Admin Dashboard", this::createAdminMenuPanel);
+        registerPanel("Voters", "Voter Information", this::createVotersPanel);
+        registerPanel("Candidates", "Candidate Information", this::createCandidatesPanel);
+        registerPanel("VoteHistory", "Vote History", this::createVoteHistoryPanel);
+        registerPanel("CandidatesView", "View Candidates", this::createCandidatesViewPanel);
+        registerPanel("Dashboard", "Live Turnout", this::createDashboardPanel);
+
+        statusLabel = new JLabel("Database unavailable - votes and reports cannot be processed right now");
+        statusLabel.setFont(LABEL_FONT);
+        statusLabel.setOpaque(true);
+        statusLabel.setBackground(new Color(220, 53, 69));
+        statusLabel.setForeground(Color.WHITE);
+        statusLabel.setBorder(new EmptyBorder(6, 20, 6, 20));
+        statusLabel.setVisible(false);
 
         add(mainPanel);
-        cardLayout.show(mainPanel, "Menu");
-        setVisible(true);
+        add(statusLabel, BorderLayout.SOUTH);
+        showCard("Menu");
     }
 
     public void setController(Controller controller) {
         this.controller = controller;
     }
 
+    private void registerPanel(String name, String title, Supplier<JPanel> factory) {
+        panelFactories.put(name, () -> createTitledPanel(factory.get(), title));
+    }
+
+    // Cards are built on first use so startup only pays for the main menu.
+    private JPanel panel(String name) {
+        JPanel panel = panels.get(name);
+        if (panel == null) {
+            panel = panelFactories.get(name).get();
+            panels.put(name, panel);
+            mainPanel.add(panel, name);
+        }
+        return panel;
+    }
+
+    private void showCard(String name) {
+        panel(name);
+        cardLayout.show(mainPanel, name);
+    }
+
     private JPanel createTitledPanel(JPanel contentPanel, String title) {
         JPanel titledPanel = new JPanel(new BorderLayout());
         titledPanel.setBackground(Color.WHITE);
@@ -109,7 +140,7 @@ public class View extends JFrame {
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.insets = new Insets(10, 0, 10, 0);
 
-        String[] actions = {"Register Voter", "Cast Vote", "View Candidates",
+        String[] actions = {"Select Election", "Register Voter", "Cast Vote", "View Candidates",
                             "View Results", "Admin Login", "Exit"};
         for (String action : actions) {
             boolean isExit = action.equals("Exit");
@@ -121,11 +152,14 @@ public class View extends JFrame {
                     return;
                 }
                 switch (action) {
+                    case "Select Election":
+                        controller.selectElection();
+                        break;
                     case "Register Voter":
-                        cardLayout.show(mainPanel, "Voter");
+                        showCard("Voter");
                         break;
                     case "Cast Vote":
-                        cardLayout.show(mainPanel, "Vote");
+                        showCard("Vote");
                         break;
                     case "View Candidates":
                         controller.refreshCandidatesView();
@@ -134,7 +168,7 @@ public class View extends JFrame {
                         controller.refreshResults();
                         break;
                     case "Admin Login":
-                        cardLayout.show(mainPanel, "AdminLogin");
+                        showCard("AdminLogin");
                         break;
                     case "Exit":
                         System.exit(0);
@@ -188,7 +222,7 @@ public class View extends JFrame {
             System.out.println("Voter Back button clicked"); // Debug log
             nameField.setText("");
             idField.setText("");
-            cardLayout.show(mainPanel, "Menu");
+            showCard("Menu");
         });
         return panel;
     }
@@ -241,7 +275,7 @@ public class View extends JFrame {
             nameField.setText("");
             idField.setText("");
             positionField.setText("");
-            cardLayout.show(mainPanel, "AdminMenu");
+            showCard("AdminMenu");
         });
         return panel;
     }
@@ -276,10 +310,17 @@ public class View extends JFrame {
         buttonPanel.add(backBtn);
         panel.add(buttonPanel, gbc);
 
+        // A resubmission of the same ballot reuses its request ID so the model can deduplicate the retry.
+        String[] pendingBallot = new String[2];
         submitBtn.addActionListener(e -> {
             System.out.println("Cast Vote button clicked"); // Debug log
             if (controller != null) {
-                controller.castVote(voterIdField.getText(), candidateIdField.getText());
+                String ballot = voterIdField.getText() + "|" + candidateIdField.getText();
+                if (!ballot.equals(pendingBallot[0])) {
+                    pendingBallot[0] = ballot;
+                    pendingBallot[1] = UUID.randomUUID().toString();
+                }
+                controller.castVote(voterIdField.getText(), candidateIdField.getText(), pendingBallot[1]);
             } else {
                 showMessage("Controller not initialized!", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -288,7 +329,8 @@ public class View extends JFrame {
             System.out.println("Vote Back button clicked"); // Debug log
             voterIdField.setText("");
             candidateIdField.setText("");
-            cardLayout.show(mainPanel, "Menu");
+            pendingBallot[0] = null;
+            showCard("Menu");
         });
         return panel;
     }
@@ -326,7 +368,7 @@ public class View extends JFrame {
         });
         backBtn.addActionListener(e -> {
             System.out.println("Results Back button clicked"); // Debug log
-            cardLayout.show(mainPanel, "Menu");
+            showCard("Menu");
         });
         return panel;
     }
@@ -373,7 +415,7 @@ public class View extends JFrame {
             System.out.println("Admin Login Back button clicked"); // Debug log
             usernameField.setText("");
             passwordField.setText("");
-            cardLayout.show(mainPanel, "Menu");
+            showCard("Menu");
         });
         return panel;
     }
@@ -387,8 +429,9 @@ public class View extends JFrame {
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.insets = new Insets(10, 0, 10, 0);
 
-        String[] actions = {"Register Candidate", "View Voter Information", "View Candidate Information",
-                            "View Vote History", "View Election Results", "Back to Main Menu"};
+        String[] actions = {"Create Election", "Register Candidate", "View Voter Information", "View Candidate Information",
+                            "View Vote History", "View Election Results", "Live Turnout", "Recount Votes",
+                            "Verify Vote Ledger", "Close & Archive Election", "Back to Main Menu"};
         for (String action : actions) {
             boolean isBack = action.equals("Back to Main Menu");
             JButton button = createStyledButton(action, isBack);
@@ -399,8 +442,11 @@ public class View extends JFrame {
                     return;
                 }
                 switch (action) {
+                    case "Create Election":
+                        controller.createElection();
+                        break;
                     case "Register Candidate":
-                        cardLayout.show(mainPanel, "Candidate");
+                        showCard("Candidate");
                         break;
                     case "View Voter Information":
                         controller.refreshVoters();
@@ -414,8 +460,20 @@ public class View extends JFrame {
                     case "View Election Results":
                         controller.refreshResults();
                         break;
+                    case "Live Turnout":
+                        controller.refreshDashboard();
+                        break;
+                    case "Recount Votes":
+                        controller.recountVotes();
+                        break;
+                    case "Verify Vote Ledger":
+                        controller.verifyLedger();
+                        break;
+                    case "Close & Archive Election":
+                        controller.archiveElection();
+                        break;
                     case "Back to Main Menu":
-                        cardLayout.show(mainPanel, "Menu");
+                        showCard("Menu");
                         break;
                 }
             });
@@ -458,7 +516,7 @@ public class View extends JFrame {
         });
         backBtn.addActionListener(e -> {
             System.out.println("Voters Back button clicked"); // Debug log
-            cardLayout.show(mainPanel, "AdminMenu");
+            showCard("AdminMenu");
         });
         return panel;
     }
@@ -497,7 +555,7 @@ public class View extends JFrame {
         });
         backBtn.addActionListener(e -> {
             System.out.println("Candidates Back button clicked"); // Debug log
-            cardLayout.show(mainPanel, "AdminMenu");
+            showCard("AdminMenu");
         });
         return panel;
     }
@@ -536,7 +594,7 @@ public class View extends JFrame {
         });
         backBtn.addActionListener(e -> {
             System.out.println("Vote History Back button clicked"); // Debug log
-            cardLayout.show(mainPanel, "AdminMenu");
+            showCard("AdminMenu");
         });
         return panel;
     }
@@ -576,7 +634,62 @@ public class View extends JFrame {
         });
         backBtn.addActionListener(e -> {
             System.out.println("Candidates View Back button clicked"); // Debug log
-            cardLayout.show(mainPanel, "Menu");
+            showCard("Menu");
+        });
+        return panel;
+    }
+
+    private JPanel createDashboardPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(Color.WHITE);
+        panel.setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        JTextArea dashboardArea = new JTextArea();
+        dashboardArea.setEditable(false);
+        dashboardArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        dashboardArea.setBackground(SECONDARY_COLOR);
+        dashboardArea.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+
+        JScrollPane scrollPane = new JScrollPane(dashboardArea);
+        JButton refreshBtn = createStyledButton("Refresh", false);
+        JButton backBtn = createStyledButton("Back", false);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        buttonPanel.setBackground(Color.WHITE);
+        buttonPanel.add(refreshBtn);
+        buttonPanel.add(backBtn);
+
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Snapshots are served from memory, so the dashboard refreshes itself, but only while it is on screen.
+        Timer autoRefresh = new Timer(5000, e -> {
+            if (controller != null) {
+                controller.refreshDashboard();
+            }
+        });
+        panel.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) {
+                return;
+            }
+            if (panel.isShowing()) {
+                autoRefresh.start();
+            } else {
+                autoRefresh.stop();
+            }
+        });
+
+        refreshBtn.addActionListener(e -> {
+            System.out.println("Dashboard Refresh button clicked"); // Debug log
+            if (controller != null) {
+                controller.refreshDashboard();
+            } else {
+                showMessage("Controller not initialized!", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        backBtn.addActionListener(e -> {
+            System.out.println("Dashboard Back button clicked"); // Debug log
+            showCard("AdminMenu");
         });
         return panel;
     }
@@ -585,13 +698,90 @@ public class View extends JFrame {
         JOptionPane.showMessageDialog(this, message, title, messageType);
     }
 
+    public Model.Election chooseElection(List<Model.Election> elections, String currentId) {
+        if (elections.isEmpty()) {
+            showMessage("No elections have been created yet", "Select Election", JOptionPane.INFORMATION_MESSAGE);
+            return null;
+        }
+        String[] labels = new String[elections.size()];
+        String current = null;
+        for (int i = 0; i < labels.length; i++) {
+            Model.Election election = elections.get(i);
+            labels[i] = election.getName() + " (" + election.getElectionId() + ")";
+            if (election.getElectionId().equals(currentId)) {
+                current = labels[i];
+            }
+        }
+        Object chosen = JOptionPane.showInputDialog(this, "Election:", "Select Election",
+                JOptionPane.QUESTION_MESSAGE, null, labels, current != null ? current : labels[0]);
+        return chosen == null ? null : elections.get(Arrays.asList(labels).indexOf(chosen));
+    }
+
+    public String[] promptNewElection() {
+        JTextField idField = new JTextField(20);
+        JTextField nameField = new JTextField(20);
+        JPanel form = new JPanel(new GridLayout(2, 2, 10, 10));
+        form.add(new JLabel("Election ID:"));
+        form.add(idField);
+        form.add(new JLabel("Name:"));
+        form.add(nameField);
+        int choice = JOptionPane.showConfirmDialog(this, form, "Create Election", JOptionPane.OK_CANCEL_OPTION);
+        return choice == JOptionPane.OK_OPTION ? new String[]{idField.getText().trim(), nameField.getText()} : null;
+    }
+
+    public void setElection(Model.Election election) {
+        setTitle("Electronic Voting System - " + election.getName());
+    }
+
+    public void setDatabaseStatus(boolean available) {
+        statusLabel.setVisible(!available);
+    }
+
+    public boolean confirm(String message, String title) {
+        return JOptionPane.showConfirmDialog(this, message, title, JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+    }
+
+    public void showRecountReport(RecountEngine.Report report) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Recounted %d votes in %.1f s.%n", report.getVotesScanned(), report.getElapsedMillis() / 1000.0));
+        if (report.getDiscrepancies().isEmpty()) {
+            sb.append("All candidate totals match the votes table.");
+        } else {
+            sb.append(report.isRepaired() ? "Repaired candidate totals:" : "Candidate totals that do not match:").append("\n");
+            for (RecountEngine.Discrepancy discrepancy : report.getDiscrepancies()) {
+                sb.append(String.format("  %s: stored %d, counted %d%n",
+                        discrepancy.getCandidateId(), discrepancy.getRecorded(), discrepancy.getCounted()));
+            }
+        }
+        if (!report.getBusy().isEmpty()) {
+            sb.append("\nNot repaired while votes were being cast, try again: ")
+              .append(String.join(", ", report.getBusy()));
+        }
+        showMessage(sb.toString(), "Recount", (report.getDiscrepancies().isEmpty() || report.isRepaired()) && report.getBusy().isEmpty()
+                ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+    }
+
+    public void showLedgerVerification(VoteLedger.Verification result) {
+        StringBuilder sb = new StringBuilder();
+        if (result.getBlocksVerified() == 0) {
+            sb.append("No new ledger blocks to verify since block ").append(result.getFirstBlock()).append(".");
+        } else {
+            sb.append(String.format("Verified ledger blocks %d to %d.%n", result.getFirstBlock(), result.getLastBlock()));
+        }
+        for (String failure : result.getFailures()) {
+            sb.append("\n").append(failure);
+        }
+        showMessage(sb.toString(), "Vote Ledger", result.isValid()
+                ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
+    }
+
     public void showAdminMenu() {
-        cardLayout.show(mainPanel, "AdminMenu");
+        showCard("AdminMenu");
     }
 
-    public void updateResults(Map<String, List<Map<String, Object>>> results) {
+    public void updateResults(Model.ElectionResults results) {
         System.out.println("Updating Results panel"); // Debug log
-        JPanel titledPanel = (JPanel) mainPanel.getComponent(4); // Results panel
+        JPanel titledPanel = panel("Results");
         JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
         Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
         if (!(centerComponent instanceof JScrollPane)) {
@@ -600,22 +790,71 @@ public class View extends JFrame {
         }
         JScrollPane scrollPane = (JScrollPane) centerComponent;
         JTextArea resultsArea = (JTextArea) scrollPane.getViewport().getView();
+        resultsArea.setText(formatResults(results));
+        showCard("Results");
+    }
+
+    static String formatResults(Model.ElectionResults results) {
         StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, List<Map<String, Object>>> entry : results.entrySet()) {
-            sb.append("Results for ").append(entry.getKey()).append(":\n");
+        sb.append(String.format("Turnout: %d of %d registered voters (%.1f%%)\n\n",
+                results.getVoted(), results.getRegistered(), results.getTurnoutPercentage()));
+        for (Model.PositionResult position : results.getPositions()) {
+            sb.append("Results for ").append(position.getPosition())
+              .append(" (").append(position.getTotalVotes()).append(" votes):\n");
             sb.append("----------------------------------------\n");
-            for (Map<String, Object> candidate : entry.getValue()) {
-                sb.append(String.format("%-30s: %d votes\n", candidate.get("name"), candidate.get("votes")));
+            for (Model.CandidateResult candidate : position.getCandidates()) {
+                sb.append(String.format("%-30s: %d votes (%.1f%%)\n",
+                        candidate.getName(), candidate.getVotes(), candidate.getPercentage()));
             }
             sb.append("\n");
         }
-        resultsArea.setText(sb.toString());
-        cardLayout.show(mainPanel, "Results");
+        return sb.toString();
     }
 
-    public void updateVoters(List<Model.Voter> voters) {
+    // Every figure here comes from this kiosk's memory: turnout is the database figure when the election
+    // was loaded plus the votes cast here since. Results has the live totals across all kiosks.
+    public void updateDashboard(VoteAnalytics.Snapshot snapshot) {
+        JPanel titledPanel = panel("Dashboard");
+        JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
+        Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
+        JTextArea dashboardArea = (JTextArea) ((JScrollPane) centerComponent).getViewport().getView();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Votes cast at this kiosk\n");
+        sb.append("----------------------------------------\n");
+        sb.append(String.format("Turnout:            %d of %d (%.1f%%)%n",
+                snapshot.getVoted(), snapshot.getRegistered(), snapshot.getTurnoutPercentage()));
+        sb.append(String.format("This minute:        %d votes%n", snapshot.getThisMinute()));
+        sb.append(String.format("Rate (last 5 min):  %.1f votes/min%n", snapshot.getVotesPerMinute()));
+        sb.append(String.format("Last hour:          %d votes%n", snapshot.getLastHour()));
+        sb.append(String.format("Last %d hours:      %d votes%n%n", snapshot.getWindowHours(), snapshot.getWindow()));
+
+        sb.append("Votes per position at this kiosk (last hour)\n");
+        sb.append("----------------------------------------\n");
+        for (Map.Entry<String, Long> entry : snapshot.getPositionsLastHour().entrySet()) {
+            sb.append(String.format("%-30s %d%n", entry.getKey(), entry.getValue()));
+        }
+
+        long[] recent = snapshot.getRecentMinutes();
+        long peak = 1;
+        for (long count : recent) {
+            peak = Math.max(peak, count);
+        }
+        sb.append(String.format("%nVotes per minute at this kiosk (last %d minutes)%n", recent.length));
+        sb.append("----------------------------------------\n");
+        for (int i = 0; i < recent.length; i++) {
+            int bar = (int) (recent[i] * 40 / peak);
+            sb.append(String.format("%4d min  %-40s %d%n", i - recent.length + 1, "#".repeat(bar), recent[i]));
+        }
+        dashboardArea.setText(sb.toString());
+        if (!titledPanel.isShowing()) {
+            showCard("Dashboard");
+        }
+    }
+
+    public void updateVoters(Model.VoterRoll voters) {
         System.out.println("Updating Voters panel"); // Debug log
-        JPanel titledPanel = (JPanel) mainPanel.getComponent(7); // Voters panel
+        JPanel titledPanel = panel("Voters");
         JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
         Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
         if (!(centerComponent instanceof JScrollPane)) {
@@ -626,15 +865,15 @@ public class View extends JFrame {
         JTable table = (JTable) scrollPane.getViewport().getView();
         DefaultTableModel model = (DefaultTableModel) table.getModel();
         model.setRowCount(0);
-        for (Model.Voter voter : voters) {
-            model.addRow(new Object[]{voter.getIdNumber(), voter.getName(), voter.getPersonId(), voter.hasVoted() ? "Yes" : "No"});
+        for (int i = 0; i < voters.size(); i++) {
+            model.addRow(new Object[]{voters.getIdNumber(i), voters.getName(i), voters.getPersonId(i), voters.hasVoted(i) ? "Yes" : "No"});
         }
-        cardLayout.show(mainPanel, "Voters");
+        showCard("Voters");
     }
 
     public void updateCandidates(List<Model.Candidate> candidates) {
         System.out.println("Updating Candidates panel"); // Debug log
-        JPanel titledPanel = (JPanel) mainPanel.getComponent(8); // Candidates panel
+        JPanel titledPanel = panel("Candidates");
         JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
         Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
         if (!(centerComponent instanceof JScrollPane)) {
@@ -649,12 +888,12 @@ public class View extends JFrame {
             model.addRow(new Object[]{candidate.getIdNumber(), candidate.getName(), candidate.getPersonId(),
                                      candidate.getPosition(), candidate.getVoteCount()});
         }
-        cardLayout.show(mainPanel, "Candidates");
+        showCard("Candidates");
     }
 
     public void updateVoteHistory(List<Map<String, String>> history) {
         System.out.println("Updating Vote History panel"); // Debug log
-        JPanel titledPanel = (JPanel) mainPanel.getComponent(9); // VoteHistory panel
+        JPanel titledPanel = panel("VoteHistory");
         JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
         Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
         if (!(centerComponent instanceof JScrollPane)) {
@@ -669,12 +908,12 @@ public class View extends JFrame {
             model.addRow(new Object[]{vote.get("voter_id"), vote.get("voter_name"), vote.get("candidate_id"),
                                      vote.get("candidate_name"), vote.get("position"), vote.get("vote_time")});
         }
-        cardLayout.show(mainPanel, "VoteHistory");
+        showCard("VoteHistory");
     }
 
     public void updateCandidatesView(List<Model.Candidate> candidates) {
         System.out.println("Updating Candidates View panel"); // Debug log
-        JPanel titledPanel = (JPanel) mainPanel.getComponent(10); // CandidatesView panel
+        JPanel titledPanel = panel("CandidatesView");
         JPanel contentPanel = (JPanel) titledPanel.getComponent(1); // Content panel
         Component centerComponent = ((BorderLayout) contentPanel.getLayout()).getLayoutComponent(BorderLayout.CENTER);
         if (!(centerComponent instanceof JScrollPane)) {
@@ -688,6 +927,10 @@ public class View extends JFrame {
         for (Model.Candidate candidate : candidates) {
             model.addRow(new Object[]{candidate.getIdNumber(), candidate.getName(), candidate.getPersonId(), candidate.getPosition()});
         }
-        cardLayout.show(mainPanel, "CandidatesView");
+        showCard("CandidatesView");
+    }
+
+    public void showCandidatesView() {
+        showCard("CandidatesView");
     }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package Main;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class VoteAnalytics implements VoteListener {
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final int RECENT_MINUTES = 30;
+
+    // Each slot packs the minute it belongs to with that minute's count, so a slot can be claimed
+    // for a new minute and incremented in a single compare-and-set.
+    private static class MinuteRing {
+        private static final int COUNT_BITS = 24;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final AtomicLongArray slots;
+
+        MinuteRing(int minutes) {
+            this.slots = new AtomicLongArray(minutes);
+        }
+
+        void record(long minute) {
+            int index = (int) (minute % slots.length());
+            while (true) {
+                long current = slots.get(index);
+                long slotMinute = current >>> COUNT_BITS;
+                long next;
+                if (slotMinute == minute) {
+                    if ((current & COUNT_MASK) == COUNT_MASK) {
+                        return;
+                    }
+                    next = current + 1;
+                } else if (slotMinute < minute) {
+                    next = (minute << COUNT_BITS) | 1;
+                } else {
+                    return;
+                }
+                if (slots.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        long count(long minute) {
+            long current = slots.get((int) (minute % slots.length()));
+            return (current >>> COUNT_BITS) == minute ? current & COUNT_MASK : 0;
+        }
+
+        long sum(long toMinute, int minutes) {
+            long total = 0;
+            for (int i = 0; i < Math.min(minutes, slots.length()); i++) {
+                total += count(toMinute - i);
+            }
+            return total;
+        }
+    }
+
+    public static class Snapshot {
+        private final long registered;
+        private final long voted;
+        private final long thisMinute;
+        private final long lastFiveMinutes;
+        private final long lastHour;
+        private final long window;
+        private final int windowHours;
+        private final long[] recentMinutes;
+        private final Map<String, Long> positionsLastHour;
+
+        Snapshot(long registered, long voted, long thisMinute, long lastFiveMinutes, long lastHour, long window,
+                 int windowHours, long[] recentMinutes, Map<String, Long> positionsLastHour) {
+            this.registered = registered;
+            this.voted = voted;
+            this.thisMinute = thisMinute;
+            this.lastFiveMinutes = lastFiveMinutes;
+            this.lastHour = lastHour;
+            this.window = window;
+            this.windowHours = windowHours;
+            this.recentMinutes = recentMinutes;
+            this.positionsLastHour = positionsLastHour;
+        }
+
+        public long getRegistered() { return registered; }
+        public long getVoted() { return voted; }
+        public double getTurnoutPercentage() { return registered == 0 ? 0.0 : voted * 100.0 / registered; }
+        public long getThisMinute() { return thisMinute; }
+        public double getVotesPerMinute() { return lastFiveMinutes / 5.0; }
+        public long getLastHour() { return lastHour; }
+        public long getWindow() { return window; }
+        public int getWindowHours() { return windowHours; }
+        // Oldest first; the last element is the current minute.
+        public long[] getRecentMinutes() { return recentMinutes; }
+        public Map<String, Long> getPositionsLastHour() { return positionsLastHour; }
+    }
+
+    private final int hours;
+    private final int minutes;
+    private final MinuteRing overall;
+    private final Map<String, MinuteRing> byPosition = new ConcurrentHashMap<>();
+    private final AtomicLong registered;
+    private final AtomicLong voted;
+
+    public VoteAnalytics(int hours, long registered, long voted) {
+        this.hours = hours;
+        this.minutes = hours * 60;
+        this.overall = new MinuteRing(minutes);
+        this.registered = new AtomicLong(registered);
+        this.voted = new AtomicLong(voted);
+    }
+
+    @Override
+    public void onVoteCast(String electionId, long voteId, String voterId, String candidateId, String position, long timestampMillis) {
+        long minute = timestampMillis / MINUTE_MILLIS;
+        overall.record(minute);
+        byPosition.computeIfAbsent(position, p -> new MinuteRing(minutes)).record(minute);
+        voted.incrementAndGet();
+    }
+
+    @Override
+    public void onVoterRegistered(String electionId, String voterId) {
+        registered.incrementAndGet();
+    }
+
+    public Snapshot snapshot() {
+        long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+        long[] recent = new long[RECENT_MINUTES];
+        for (int i = 0; i < RECENT_MINUTES; i++) {
+            recent[i] = overall.count(minute - (RECENT_MINUTES - 1) + i);
+        }
+        Map<String, Long> positions = new TreeMap<>();
+        byPosition.forEach((position, ring) -> positions.put(position, ring.sum(minute, 60)));
+        return new Snapshot(registered.get(), voted.get(), overall.count(minute),
+                overall.sum(minute - 1, 5), overall.sum(minute, 60), overall.sum(minute, minutes),
+                hours, recent, positions);
+    }
+}
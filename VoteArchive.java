@@ -0,0 +1,635 @@
+package Main;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Archived votes live in column-oriented files: each row group stores vote IDs and timestamps as
+// deltas, candidates as dictionary codes and voter IDs bit-packed, then deflates the group. A footer
+// keeps each group's time range and position mask so scans skip groups that cannot match.
+// The files are stored in the database next to their catalog row, so every node sees the same
+// archive; the local directory only caches them for memory-mapped scans.
+public class VoteArchive {
+    private static final int MAGIC = 0x56434131;
+    static final int ROW_GROUP_SIZE = 65_536;
+    private static final int CHUNK_ROWS = 1_048_576;
+
+    public interface Visitor {
+        void visit(long voteId, int voterId, String candidateId, String candidateName, String position, long voteTimeMillis);
+    }
+
+    public static class Filter {
+        public static final Filter ALL = new Filter(Long.MIN_VALUE, Long.MAX_VALUE, null);
+
+        private final long fromMillis;
+        private final long toMillis;
+        private final Set<String> positions;
+
+        // Votes with fromMillis <= vote time < toMillis; a null position set matches every position.
+        public Filter(long fromMillis, long toMillis, Set<String> positions) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.positions = positions;
+        }
+
+        public long getFromMillis() { return fromMillis; }
+        public long getToMillis() { return toMillis; }
+        public Set<String> getPositions() { return positions; }
+
+        boolean overlaps(long minMillis, long maxMillis) {
+            return maxMillis >= fromMillis && minMillis < toMillis;
+        }
+
+        boolean matches(long millis, String position) {
+            return millis >= fromMillis && millis < toMillis && (positions == null || positions.contains(position));
+        }
+    }
+
+    public static class Summary {
+        private int files;
+        private long rows;
+        private long bytes;
+        private long unhashed;
+
+        public int getFiles() { return files; }
+        public long getRows() { return rows; }
+        public long getBytes() { return bytes; }
+        public long getUnhashed() { return unhashed; }
+    }
+
+    private final ReplicaRouter router;
+    private final Path cacheDirectory;
+
+    public VoteArchive(ReplicaRouter router, Path cacheDirectory) {
+        this.router = router;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    // Moves votes older than the cutoff into archive files, one file and one transaction per chunk.
+    // Archiving stops at the first vote the ledger has not hashed yet, so the ledger never misses one;
+    // the summary counts the votes left behind for a later run.
+    public Summary archive(String electionId, long cutoffMillis) {
+        Summary summary = new Summary();
+        long afterId = 0;
+        while (true) {
+            Chunk chunk = readChunk(electionId, afterId, cutoffMillis);
+            if (chunk.size == 0) {
+                summary.unhashed = countRemaining(electionId, cutoffMillis);
+                return summary;
+            }
+            String fileName = electionId + "-" + chunk.ids[0] + "-" + chunk.ids[chunk.size - 1] + ".vca";
+            byte[] data = encode(electionId, chunk);
+            verify(fileName, data, chunk);
+            commit(fileName, data, electionId, chunk, cutoffMillis);
+            cache(fileName, data);
+            summary.files++;
+            summary.rows += chunk.size;
+            summary.bytes += data.length;
+            afterId = chunk.ids[chunk.size - 1];
+            if (chunk.reachedUnhashed) {
+                summary.unhashed = countRemaining(electionId, cutoffMillis);
+                return summary;
+            }
+        }
+    }
+
+    public void scan(String electionId, Filter filter, Visitor visitor) {
+        String sql = "SELECT file_name FROM vote_archives WHERE election_id = ? " +
+                     "AND max_time_millis >= ? AND min_time_millis < ? ORDER BY first_vote_id";
+        List<String> files = new ArrayList<>();
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setLong(2, filter.fromMillis);
+            pstmt.setLong(3, filter.toMillis);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                files.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to list vote archives: " + e.getMessage());
+        }
+        for (String file : files) {
+            scanFile(file, open(file), filter, visitor);
+        }
+    }
+
+    // Visits the archived votes among the given IDs, reading only the files whose ID range covers one.
+    public void find(String electionId, NavigableSet<Long> voteIds, Visitor visitor) {
+        if (voteIds.isEmpty()) {
+            return;
+        }
+        String sql = "SELECT file_name, first_vote_id, last_vote_id FROM vote_archives WHERE election_id = ? " +
+                     "AND last_vote_id >= ? AND first_vote_id <= ? ORDER BY first_vote_id";
+        List<String> files = new ArrayList<>();
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setLong(2, voteIds.first());
+            pstmt.setLong(3, voteIds.last());
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                if (!voteIds.subSet(rs.getLong(2), true, rs.getLong(3), true).isEmpty()) {
+                    files.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to list vote archives: " + e.getMessage());
+        }
+        for (String file : files) {
+            scanFile(file, open(file), Filter.ALL, (voteId, voterId, candidateId, candidateName, position, millis) -> {
+                if (voteIds.contains(voteId)) {
+                    visitor.visit(voteId, voterId, candidateId, candidateName, position, millis);
+                }
+            });
+        }
+    }
+
+    // The cached copy is used when it is intact; otherwise the file is fetched from the database again.
+    private ByteBuffer open(String fileName) {
+        Path cached = cacheDirectory.resolve(fileName);
+        if (Files.isRegularFile(cached)) {
+            try (FileChannel channel = FileChannel.open(cached, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (isComplete(mapped)) {
+                    return mapped;
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring cached vote archive " + fileName + ": " + e.getMessage());
+            }
+        }
+        byte[] data;
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT data FROM vote_archive_files WHERE file_name = ?")) {
+            pstmt.setString(1, fileName);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                throw new RuntimeException("Vote archive " + fileName + " is missing from the database");
+            }
+            data = rs.getBytes(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read vote archive " + fileName + ": " + e.getMessage());
+        }
+        cache(fileName, data);
+        return ByteBuffer.wrap(data);
+    }
+
+    // Best effort: a node that cannot write its cache still scans from the database copy.
+    private void cache(String fileName, byte[] data) {
+        Path file = cacheDirectory.resolve(fileName);
+        Path temp = cacheDirectory.resolve(fileName + ".tmp");
+        try {
+            Files.createDirectories(cacheDirectory);
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            System.err.println("Could not cache vote archive " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isComplete(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        return limit >= 16 && buffer.getInt(0) == MAGIC && buffer.getInt(limit - 4) == MAGIC;
+    }
+
+    // Decodes the encoded file before any vote is deleted, so an unreadable archive never replaces them.
+    private static void verify(String fileName, byte[] data, Chunk chunk) {
+        int[] seen = {0};
+        scanFile(fileName, ByteBuffer.wrap(data), Filter.ALL, (voteId, voterId, candidateId, candidateName, position, millis) -> {
+            int i = seen[0]++;
+            if (i >= chunk.size || chunk.ids[i] != voteId || chunk.voters[i] != voterId
+                    || !chunk.candidateIds.get(chunk.candidates[i]).equals(candidateId)) {
+                throw new RuntimeException("Vote archive " + fileName + " did not read back correctly");
+            }
+        });
+        if (seen[0] != chunk.size) {
+            throw new RuntimeException("Vote archive " + fileName + " did not read back correctly");
+        }
+    }
+
+    public Map<String, Long> count(String electionId, Filter filter) {
+        Map<String, Long> counts = new HashMap<>();
+        scan(electionId, filter, (voteId, voterId, candidateId, candidateName, position, millis) ->
+                counts.merge(candidateId, 1L, Long::sum));
+        return counts;
+    }
+
+    private long countRemaining(String electionId, long cutoffMillis) {
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM votes WHERE election_id = ? AND vote_time < ?")) {
+            pstmt.setString(1, electionId);
+            pstmt.setTimestamp(2, new Timestamp(cutoffMillis));
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count votes left to archive: " + e.getMessage());
+        }
+    }
+
+    private static class Chunk {
+        long[] ids = new long[1024];
+        int[] voters = new int[1024];
+        int[] candidates = new int[1024];
+        long[] times = new long[1024];
+        int size;
+        boolean reachedUnhashed;
+        final List<String> candidateIds = new ArrayList<>();
+        final List<String> candidateNames = new ArrayList<>();
+        final List<Integer> candidatePositions = new ArrayList<>();
+        final List<String> positions = new ArrayList<>();
+        final Map<String, Integer> candidateCodes = new HashMap<>();
+        final Map<String, Integer> positionCodes = new HashMap<>();
+
+        void add(long id, int voter, String candidateId, String candidateName, String position, long time) {
+            if (size == ids.length) {
+                int grown = size * 2;
+                ids = Arrays.copyOf(ids, grown);
+                voters = Arrays.copyOf(voters, grown);
+                candidates = Arrays.copyOf(candidates, grown);
+                times = Arrays.copyOf(times, grown);
+            }
+            Integer code = candidateCodes.get(candidateId);
+            if (code == null) {
+                Integer positionCode = positionCodes.get(position);
+                if (positionCode == null) {
+                    positionCode = positions.size();
+                    positions.add(position);
+                    positionCodes.put(position, positionCode);
+                }
+                code = candidateIds.size();
+                candidateIds.add(candidateId);
+                candidateNames.add(candidateName);
+                candidatePositions.add(positionCode);
+                candidateCodes.put(candidateId, code);
+            }
+            ids[size] = id;
+            voters[size] = voter;
+            candidates[size] = code;
+            times[size] = time;
+            size++;
+        }
+    }
+
+    // A chunk ends before the first vote missing from the ledger, so every vote between its first
+    // and last ID has been hashed.
+    private Chunk readChunk(String electionId, long afterId, long cutoffMillis) {
+        String sql = "SELECT v.id, v.voter_id, v.candidate_id, v.vote_time, c.name, c.position, l.vote_id FROM votes v " +
+                     "JOIN candidates c ON c.election_id = v.election_id AND c.id_number = v.candidate_id " +
+                     "LEFT JOIN vote_ledger l ON l.vote_id = v.id " +
+                     "WHERE v.election_id = ? AND v.id > ? AND v.vote_time < ? " +
+                     "ORDER BY v.id LIMIT " + CHUNK_ROWS;
+        Chunk chunk = new Chunk();
+        try (Connection conn = router.getBackgroundConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, electionId);
+            pstmt.setLong(2, afterId);
+            pstmt.setTimestamp(3, new Timestamp(cutoffMillis));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rs.getLong(7);
+                if (rs.wasNull()) {
+                    chunk.reachedUnhashed = true;
+                    break;
+                }
+                chunk.add(rs.getLong(1), Model.parseId(rs.getString(2)), rs.getString(3), rs.getString(5),
+                        rs.getString(6), rs.getTimestamp(4).getTime());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read votes for archiving: " + e.getMessage());
+        }
+        return chunk;
+    }
+
+    // The file, its catalog row and the deletes commit together, so the votes are never gone from the
+    // database without their archive being there for every node.
+    private void commit(String fileName, byte[] data, String electionId, Chunk chunk, long cutoffMillis) {
+        long firstId = chunk.ids[0];
+        long lastId = chunk.ids[chunk.size - 1];
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int i = 0; i < chunk.size; i++) {
+            minTime = Math.min(minTime, chunk.times[i]);
+            maxTime = Math.max(maxTime, chunk.times[i]);
+        }
+        try (Connection conn = router.getBackgroundConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement catalog = conn.prepareStatement(
+                         "INSERT INTO vote_archives (file_name, election_id, first_vote_id, last_vote_id, row_count, " +
+                         "min_time_millis, max_time_millis) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement contents = conn.prepareStatement(
+                         "INSERT INTO vote_archive_files (file_name, data) VALUES (?, ?)");
+                 PreparedStatement delete = conn.prepareStatement(
+                         "DELETE v FROM votes v JOIN vote_ledger l ON l.vote_id = v.id " +
+                         "WHERE v.election_id = ? AND v.id BETWEEN ? AND ? AND v.vote_time < ?")) {
+                catalog.setString(1, fileName);
+                catalog.setString(2, electionId);
+                catalog.setLong(3, firstId);
+                catalog.setLong(4, lastId);
+                catalog.setInt(5, chunk.size);
+                catalog.setLong(6, minTime);
+                catalog.setLong(7, maxTime);
+                catalog.executeUpdate();
+                contents.setString(1, fileName);
+                contents.setBytes(2, data);
+                contents.executeUpdate();
+                delete.setString(1, electionId);
+                delete.setLong(2, firstId);
+                delete.setLong(3, lastId);
+                delete.setTimestamp(4, new Timestamp(cutoffMillis));
+                int deleted = delete.executeUpdate();
+                if (deleted != chunk.size) {
+                    conn.rollback();
+                    throw new RuntimeException("Votes changed while archiving (" + deleted + " of " + chunk.size +
+                            " rows matched), please try again");
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to record vote archive: " + e.getMessage());
+        }
+    }
+
+    private static byte[] encode(String electionId, Chunk chunk) {
+        List<long[]> index = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            writeString(out, electionId);
+            out.writeInt(chunk.positions.size());
+            for (String position : chunk.positions) {
+                writeString(out, position);
+            }
+            out.writeInt(chunk.candidateIds.size());
+            for (int i = 0; i < chunk.candidateIds.size(); i++) {
+                writeString(out, chunk.candidateIds.get(i));
+                writeString(out, chunk.candidateNames.get(i));
+                out.writeInt(chunk.candidatePositions.get(i));
+            }
+
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            for (int from = 0; from < chunk.size; from += ROW_GROUP_SIZE) {
+                int to = Math.min(chunk.size, from + ROW_GROUP_SIZE);
+                byte[] raw = encodeGroup(chunk, from, to);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                byte[] buffer = new byte[4096];
+                long offset = out.size();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    out.write(buffer, 0, n);
+                }
+                long minTime = Long.MAX_VALUE;
+                long maxTime = Long.MIN_VALUE;
+                long positionMask = 0;
+                for (int i = from; i < to; i++) {
+                    minTime = Math.min(minTime, chunk.times[i]);
+                    maxTime = Math.max(maxTime, chunk.times[i]);
+                    positionMask |= positionBit(chunk.candidatePositions.get(chunk.candidates[i]));
+                }
+                index.add(new long[]{offset, out.size() - offset, raw.length, to - from, minTime, maxTime, positionMask});
+            }
+            deflater.end();
+
+            long indexOffset = out.size();
+            out.writeInt(index.size());
+            for (long[] group : index) {
+                out.writeLong(group[0]);
+                out.writeInt((int) group[1]);
+                out.writeInt((int) group[2]);
+                out.writeInt((int) group[3]);
+                out.writeLong(group[4]);
+                out.writeLong(group[5]);
+                out.writeLong(group[6]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode vote archive: " + e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeGroup(Chunk chunk, int from, int to) throws IOException {
+        int rows = to - from;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeLong(chunk.ids[from]);
+        for (int i = from + 1; i < to; i++) {
+            writeVarLong(out, chunk.ids[i] - chunk.ids[i - 1]);
+        }
+        out.writeLong(chunk.times[from]);
+        for (int i = from + 1; i < to; i++) {
+            long delta = chunk.times[i] - chunk.times[i - 1];
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+        }
+
+        int[] codes = Arrays.copyOfRange(chunk.candidates, from, to);
+        int codeBits = bitsFor(chunk.candidateIds.size() - 1);
+        out.writeByte(codeBits);
+        pack(out, codes, codeBits);
+
+        int minVoter = Integer.MAX_VALUE;
+        int maxVoter = 0;
+        for (int i = from; i < to; i++) {
+            minVoter = Math.min(minVoter, chunk.voters[i]);
+            maxVoter = Math.max(maxVoter, chunk.voters[i]);
+        }
+        int[] voters = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            voters[i] = chunk.voters[from + i] - minVoter;
+        }
+        int voterBits = bitsFor(maxVoter - minVoter);
+        out.writeInt(minVoter);
+        out.writeByte(voterBits);
+        pack(out, voters, voterBits);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void scanFile(String fileName, ByteBuffer mapped, Filter filter, Visitor visitor) {
+        int limit = mapped.limit();
+        if (!isComplete(mapped)) {
+            throw new RuntimeException("Vote archive " + fileName + " is damaged");
+        }
+
+        ByteBuffer header = mapped.duplicate();
+        header.position(4);
+        readString(header);
+        String[] positions = new String[header.getInt()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = readString(header);
+        }
+        int candidateCount = header.getInt();
+        String[] candidateIds = new String[candidateCount];
+        String[] candidateNames = new String[candidateCount];
+        String[] candidatePositions = new String[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            candidateIds[i] = readString(header);
+            candidateNames[i] = readString(header);
+            candidatePositions[i] = positions[header.getInt()];
+        }
+        long wantedMask = -1;
+        if (filter.positions != null) {
+            wantedMask = 0;
+            for (int i = 0; i < positions.length; i++) {
+                if (filter.positions.contains(positions[i])) {
+                    wantedMask |= positionBit(i);
+                }
+            }
+        }
+
+        ByteBuffer index = mapped.duplicate();
+        index.position((int) mapped.getLong(limit - 12));
+        int groups = index.getInt();
+        Inflater inflater = new Inflater();
+        try {
+            for (int g = 0; g < groups; g++) {
+                long offset = index.getLong();
+                int length = index.getInt();
+                int rawLength = index.getInt();
+                int rows = index.getInt();
+                long minTime = index.getLong();
+                long maxTime = index.getLong();
+                long positionMask = index.getLong();
+                if (!filter.overlaps(minTime, maxTime) || (positionMask & wantedMask) == 0) {
+                    continue;
+                }
+                ByteBuffer compressed = mapped.duplicate();
+                compressed.position((int) offset).limit((int) offset + length);
+                byte[] raw = new byte[rawLength];
+                inflater.reset();
+                inflater.setInput(compressed);
+                inflater.inflate(raw);
+                decodeGroup(ByteBuffer.wrap(raw), rows, filter, visitor, candidateIds, candidateNames, candidatePositions);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Vote archive " + fileName + " is damaged: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void decodeGroup(ByteBuffer in, int rows, Filter filter, Visitor visitor,
+                                    String[] candidateIds, String[] candidateNames, String[] candidatePositions) {
+        long[] ids = new long[rows];
+        ids[0] = in.getLong();
+        for (int i = 1; i < rows; i++) {
+            ids[i] = ids[i - 1] + readVarLong(in);
+        }
+        long[] times = new long[rows];
+        times[0] = in.getLong();
+        for (int i = 1; i < rows; i++) {
+            long zigzag = readVarLong(in);
+            times[i] = times[i - 1] + ((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+        int[] codes = unpack(in, rows, in.get());
+        int minVoter = in.getInt();
+        int[] voters = unpack(in, rows, in.get());
+        for (int i = 0; i < rows; i++) {
+            String position = candidatePositions[codes[i]];
+            if (filter.matches(times[i], position)) {
+                visitor.visit(ids[i], minVoter + voters[i], candidateIds[codes[i]], candidateNames[codes[i]],
+                        position, times[i]);
+            }
+        }
+    }
+
+    private static long positionBit(int positionCode) {
+        // Files with more than 64 positions share the top bit, which only costs some pruning.
+        return 1L << Math.min(positionCode, 63);
+    }
+
+    private static int bitsFor(int maxValue) {
+        return maxValue <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(maxValue);
+    }
+
+    private static void pack(DataOutputStream out, int[] values, int bits) throws IOException {
+        long buffer = 0;
+        int buffered = 0;
+        for (int value : values) {
+            buffer |= ((long) value) << buffered;
+            buffered += bits;
+            while (buffered >= 8) {
+                out.writeByte((int) buffer);
+                buffer >>>= 8;
+                buffered -= 8;
+            }
+        }
+        if (buffered > 0) {
+            out.writeByte((int) buffer);
+        }
+    }
+
+    private static int[] unpack(ByteBuffer in, int count, int bits) {
+        int[] values = new int[count];
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < count; i++) {
+            while (buffered < bits) {
+                buffer |= (in.get() & 0xFFL) << buffered;
+                buffered += 8;
+            }
+            values[i] = (int) (buffer & mask);
+            buffer >>>= bits;
+            buffered -= bits;
+        }
+        return values;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package Main;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class VoteLedger {
+    public static final int BLOCK_SIZE = 1024;
+    private static final String GENESIS_HASH = "0".repeat(64);
+    private static final int BATCH_SIZE = 2_000;
+    private static final long POLL_MILLIS = 500;
+    // A vote commits within Model.VOTE_COMMIT_DEADLINE_MILLIS of taking its ID; the rest is headroom
+    // for the commit itself.
+    private static final long SETTLE_MILLIS = Model.VOTE_COMMIT_DEADLINE_MILLIS + 3_000;
+    private static final long GAP_WATCH_MILLIS = 60_000;
+    private static final int MAX_GAPS = 10_000;
+
+    public static class Verification {
+        private final long firstBlock;
+        private final long lastBlock;
+        private final List<String> failures;
+
+        Verification(long firstBlock, long lastBlock, List<String> failures) {
+            this.firstBlock = firstBlock;
+            this.lastBlock = lastBlock;
+            this.failures = failures;
+        }
+
+        public long getFirstBlock() { return firstBlock; }
+        public long getLastBlock() { return lastBlock; }
+        public long getBlocksVerified() { return Math.max(0, lastBlock - firstBlock + 1); }
+        public List<String> getFailures() { return failures; }
+        public boolean isValid() { return failures.isEmpty(); }
+    }
+
+    // A ledger entry whose vote row is gone; it only verifies if the archive holds the same vote.
+    private static class MissingVote {
+        final long voteId;
+        final String electionId;
+        final String voterId;
+        final String candidateId;
+
+        MissingVote(long voteId, String electionId, String voterId, String candidateId) {
+            this.voteId = voteId;
+            this.electionId = electionId;
+            this.voterId = voterId;
+            this.candidateId = candidateId;
+        }
+    }
+
+    private final ReplicaRouter router;
+    private final VoteArchive archive;
+    private ScheduledExecutorService hasher;
+    private long lastSeq;
+    private long lastVoteId;
+    private String lastHash = GENESIS_HASH;
+    private final List<byte[]> openBlock = new ArrayList<>();
+    // InnoDB hands out vote IDs before commit, so a lower ID can appear after a higher one was hashed.
+    // The highest ID seen at some moment is only hashed up to once the vote commit deadline has passed
+    // since then, so any gap below it is a rollback. Gaps are still re-checked for a while, and a vote
+    // that shows up in one anyway is appended late rather than lost.
+    private long settledVoteId;
+    private long pendingVoteId;
+    private long pendingSince;
+    private final NavigableMap<Long, Long> gaps = new TreeMap<>();
+    private volatile long lag;
+    private boolean restored;
+
+    public VoteLedger(ReplicaRouter router, VoteArchive archive) {
+        this.router = router;
+        this.archive = archive;
+    }
+
+    public synchronized void start() {
+        if (hasher != null) {
+            return;
+        }
+        hasher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vote-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        hasher.scheduleWithFixedDelay(this::catchUp, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (hasher != null) {
+            hasher.shutdownNow();
+        }
+    }
+
+    public long getLag() {
+        return lag;
+    }
+
+    private void restore(Connection conn) throws SQLException {
+        lastSeq = 0;
+        lastVoteId = 0;
+        lastHash = GENESIS_HASH;
+        openBlock.clear();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT seq, hash FROM vote_ledger ORDER BY seq DESC LIMIT 1")) {
+                if (rs.next()) {
+                    lastSeq = rs.getLong("seq");
+                    lastHash = rs.getString("hash");
+                }
+            }
+            // Late entries can follow higher vote IDs, so the last entry is not necessarily the highest.
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(vote_id), 0) FROM vote_ledger")) {
+                rs.next();
+                lastVoteId = rs.getLong(1);
+            }
+            long blockStart = lastSeq - lastSeq % BLOCK_SIZE + 1;
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT hash FROM vote_ledger WHERE seq >= " + blockStart + " ORDER BY seq")) {
+                while (rs.next()) {
+                    openBlock.add(fromHex(rs.getString(1)));
+                }
+            }
+        }
+    }
+
+    // Another process may have appended since this one last held the lock.
+    private boolean isHead(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT seq, hash FROM vote_ledger ORDER BY seq DESC LIMIT 1")) {
+            if (!rs.next()) {
+                return lastSeq == 0;
+            }
+            return rs.getLong(1) == lastSeq && rs.getString(2).equals(lastHash);
+        }
+    }
+
+    // Every kiosk runs a ledger, so each round first takes a named lock on its connection: only one
+    // process appends at a time, and a standby takes over on its next round if the writer goes away.
+    private void catchUp() {
+        try (Connection conn = router.getBackgroundConnection()) {
+            if (!acquireWriterLock(conn, 0)) {
+                return;
+            }
+            try {
+                catchUp(conn);
+            } finally {
+                releaseWriterLock(conn);
+            }
+        } catch (SQLException | RuntimeException e) {
+            restored = false;
+            System.err.println("Vote ledger stalled: " + e.getMessage());
+        }
+    }
+
+    // Also taken by anything that deletes votes, so no vote is hashed while it is being deleted.
+    static boolean acquireWriterLock(Connection conn, int timeoutSeconds) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK('vote_ledger', ?)")) {
+            pstmt.setInt(1, timeoutSeconds);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    static void releaseWriterLock(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT RELEASE_LOCK('vote_ledger')").close();
+        }
+    }
+
+    // A failed append leaves this process's chain position unknown, so it is restored from the table
+    // before the next round appends anything.
+    private void catchUp(Connection conn) throws SQLException {
+        if (!restored || !isHead(conn)) {
+            restore(conn);
+            restored = true;
+        }
+        long now = System.currentTimeMillis();
+        if (pendingSince != 0 && now - pendingSince >= SETTLE_MILLIS) {
+            settledVoteId = pendingVoteId;
+            pendingSince = 0;
+        }
+        long maxVoteId;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM votes")) {
+            rs.next();
+            maxVoteId = rs.getLong(1);
+            if (pendingSince == 0 && maxVoteId > settledVoteId) {
+                pendingVoteId = maxVoteId;
+                pendingSince = now;
+            }
+        }
+        while (appendBatch(conn) == BATCH_SIZE) {
+            // Keep going without sleeping while there is a backlog.
+        }
+        recheckGaps(conn, now);
+        lag = Math.max(0, maxVoteId - lastVoteId);
+    }
+
+    private int appendBatch(Connection conn) throws SQLException {
+        String select = "SELECT id, election_id, voter_id, candidate_id, vote_time FROM votes " +
+                        "WHERE id > ? AND id <= ? ORDER BY id LIMIT " + BATCH_SIZE;
+        try (PreparedStatement votes = conn.prepareStatement(select)) {
+            votes.setLong(1, lastVoteId);
+            votes.setLong(2, settledVoteId);
+            return append(conn, votes, true);
+        }
+    }
+
+    // Only IDs skipped within the watch window are looked at, and only those the ledger does not hold.
+    private void recheckGaps(Connection conn, long now) throws SQLException {
+        gaps.values().removeIf(foundAt -> now - foundAt > GAP_WATCH_MILLIS);
+        if (gaps.isEmpty()) {
+            return;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (Long id : gaps.keySet()) {
+            ids.append(ids.length() == 0 ? "" : ",").append(id);
+        }
+        String select = "SELECT v.id, v.election_id, v.voter_id, v.candidate_id, v.vote_time FROM votes v " +
+                        "LEFT JOIN vote_ledger l ON l.vote_id = v.id " +
+                        "WHERE l.vote_id IS NULL AND v.id IN (" + ids + ") ORDER BY v.id";
+        try (PreparedStatement votes = conn.prepareStatement(select)) {
+            append(conn, votes, false);
+        }
+    }
+
+    // In order, entries continue from the last hashed vote and any IDs skipped on the way are watched.
+    // Late entries fill such a gap and leave the position alone.
+    private int append(Connection conn, PreparedStatement votes, boolean inOrder) throws SQLException {
+        String insert = "INSERT INTO vote_ledger (seq, vote_id, election_id, voter_id, candidate_id, vote_time_millis, " +
+                        "prev_hash, hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String checkpoint = "INSERT INTO ledger_checkpoints (block_no, first_seq, last_seq, last_hash, merkle_root) " +
+                            "VALUES (?, ?, ?, ?, ?)";
+        long seq = lastSeq;
+        long voteId = lastVoteId;
+        String hash = lastHash;
+        List<byte[]> block = new ArrayList<>(openBlock);
+        List<Long> appendedIds = new ArrayList<>();
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement entries = conn.prepareStatement(insert);
+                 PreparedStatement checkpoints = conn.prepareStatement(checkpoint)) {
+                ResultSet rs = votes.executeQuery();
+                while (rs.next()) {
+                    seq++;
+                    long id = rs.getLong("id");
+                    if (inOrder) {
+                        voteId = id;
+                    }
+                    String electionId = rs.getString("election_id");
+                    String voterId = rs.getString("voter_id");
+                    String candidateId = rs.getString("candidate_id");
+                    long voteTime = rs.getTimestamp("vote_time").getTime();
+                    String prevHash = hash;
+                    hash = entryHash(prevHash, seq, id, electionId, voterId, candidateId, voteTime);
+
+                    entries.setLong(1, seq);
+                    entries.setLong(2, id);
+                    entries.setString(3, electionId);
+                    entries.setString(4, voterId);
+                    entries.setString(5, candidateId);
+                    entries.setLong(6, voteTime);
+                    entries.setString(7, prevHash);
+                    entries.setString(8, hash);
+                    entries.addBatch();
+                    appendedIds.add(id);
+
+                    block.add(fromHex(hash));
+                    if (block.size() == BLOCK_SIZE) {
+                        checkpoints.setLong(1, (seq - 1) / BLOCK_SIZE);
+                        checkpoints.setLong(2, seq - BLOCK_SIZE + 1);
+                        checkpoints.setLong(3, seq);
+                        checkpoints.setString(4, hash);
+                        checkpoints.setString(5, toHex(merkleRoot(block)));
+                        checkpoints.addBatch();
+                        block.clear();
+                    }
+                }
+                entries.executeBatch();
+                checkpoints.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        long previous = lastVoteId;
+        lastSeq = seq;
+        lastVoteId = voteId;
+        lastHash = hash;
+        openBlock.clear();
+        openBlock.addAll(block);
+        if (inOrder) {
+            watchGaps(previous, appendedIds);
+        } else {
+            for (Long id : appendedIds) {
+                gaps.remove(id);
+                System.err.println("Vote " + id + " committed after the ledger had settled past it; appended late");
+            }
+        }
+        return appendedIds.size();
+    }
+
+    private void watchGaps(long previous, List<Long> appendedIds) {
+        long now = System.currentTimeMillis();
+        for (Long id : appendedIds) {
+            for (long missing = previous + 1; missing < id && gaps.size() < MAX_GAPS; missing++) {
+                gaps.put(missing, now);
+            }
+            previous = id;
+        }
+    }
+
+    // Checkpointed blocks are independent given the previous block's last hash, so they verify in parallel.
+    public Verification verify(long fromBlock) {
+        List<long[]> blocks = new ArrayList<>();
+        Map<Long, String> lastHashes = new HashMap<>();
+        Map<Long, String> roots = new HashMap<>();
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT block_no, first_seq, last_seq, last_hash, merkle_root FROM ledger_checkpoints " +
+                     "WHERE block_no >= ? ORDER BY block_no")) {
+            pstmt.setLong(1, Math.max(0, fromBlock - 1));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                long blockNo = rs.getLong("block_no");
+                lastHashes.put(blockNo, rs.getString("last_hash"));
+                roots.put(blockNo, rs.getString("merkle_root"));
+                if (blockNo >= fromBlock) {
+                    blocks.add(new long[]{blockNo, rs.getLong("first_seq"), rs.getLong("last_seq")});
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read ledger checkpoints: " + e.getMessage());
+        }
+        if (blocks.isEmpty()) {
+            return new Verification(fromBlock, fromBlock - 1, Collections.emptyList());
+        }
+
+        Queue<MissingVote> missingVotes = new ConcurrentLinkedQueue<>();
+        List<String> failures = blocks.parallelStream()
+                .flatMap(block -> {
+                    long blockNo = block[0];
+                    String expectedPrev = blockNo == 0 ? GENESIS_HASH : lastHashes.get(blockNo - 1);
+                    return verifyBlock(blockNo, block[1], block[2], expectedPrev, roots.get(blockNo), missingVotes).stream();
+                })
+                .collect(Collectors.toList());
+        failures.addAll(verifyArchived(missingVotes));
+        long lastBlock = blocks.get(blocks.size() - 1)[0];
+        long missing = LongStream.rangeClosed(fromBlock, lastBlock).filter(b -> !roots.containsKey(b)).count();
+        if (missing > 0) {
+            failures.add(missing + " checkpoint(s) missing between blocks " + fromBlock + " and " + lastBlock);
+        }
+        return new Verification(fromBlock, lastBlock, failures);
+    }
+
+    private List<String> verifyBlock(long blockNo, long firstSeq, long lastSeq, String expectedPrev, String expectedRoot,
+                                     Queue<MissingVote> missingVotes) {
+        List<String> failures = new ArrayList<>();
+        List<byte[]> hashes = new ArrayList<>();
+        String sql = "SELECT l.seq, l.vote_id, l.election_id, l.voter_id, l.candidate_id, l.vote_time_millis, " +
+                     "l.prev_hash, l.hash, v.election_id AS current_election_id, " +
+                     "v.voter_id AS current_voter_id, v.candidate_id AS current_candidate_id " +
+                     "FROM vote_ledger l LEFT JOIN votes v ON v.id = l.vote_id " +
+                     "WHERE l.seq BETWEEN ? AND ? ORDER BY l.seq";
+        try (Connection conn = router.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, firstSeq);
+            pstmt.setLong(2, lastSeq);
+            ResultSet rs = pstmt.executeQuery();
+            String prev = expectedPrev;
+            long expectedSeq = firstSeq;
+            while (rs.next()) {
+                long seq = rs.getLong("seq");
+                long voteId = rs.getLong("vote_id");
+                String electionId = rs.getString("election_id");
+                String voterId = rs.getString("voter_id");
+                String candidateId = rs.getString("candidate_id");
+                if (seq != expectedSeq) {
+                    failures.add("Block " + blockNo + ": entry " + expectedSeq + " is missing");
+                    return failures;
+                }
+                if (!rs.getString("prev_hash").equals(prev)) {
+                    failures.add("Block " + blockNo + ": entry " + seq + " is not chained to its predecessor");
+                }
+                String hash = entryHash(prev, seq, voteId, electionId, voterId, candidateId, rs.getLong("vote_time_millis"));
+                if (!hash.equals(rs.getString("hash"))) {
+                    failures.add("Block " + blockNo + ": entry " + seq + " does not match its hash");
+                }
+                String currentVoter = rs.getString("current_voter_id");
+                if (currentVoter == null) {
+                    missingVotes.add(new MissingVote(voteId, electionId, voterId, candidateId));
+                } else if (!currentVoter.equals(voterId)
+                        || !rs.getString("current_candidate_id").equals(candidateId)
+                        || !rs.getString("current_election_id").equals(electionId)) {
+                    failures.add("Vote " + voteId + " was modified after it was recorded");
+                }
+                hashes.add(fromHex(hash));
+                prev = hash;
+                expectedSeq++;
+            }
+            if (expectedSeq != lastSeq + 1) {
+                failures.add("Block " + blockNo + ": entries after " + (expectedSeq - 1) + " are missing");
+            } else if (!toHex(merkleRoot(hashes)).equals(expectedRoot)) {
+                failures.add("Block " + blockNo + ": Merkle root does not match its checkpoint");
+            }
+        } catch (SQLException e) {
+            failures.add("Block " + blockNo + ": could not be read (" + e.getMessage() + ")");
+        }
+        return failures;
+    }
+
+    // Archiving deletes vote rows, so a ledger entry without one must match its vote in the archive.
+    private List<String> verifyArchived(Collection<MissingVote> missingVotes) {
+        List<String> failures = new ArrayList<>();
+        Map<String, NavigableMap<Long, MissingVote>> byElection = new TreeMap<>();
+        for (MissingVote missing : missingVotes) {
+            byElection.computeIfAbsent(missing.electionId, id -> new TreeMap<>()).put(missing.voteId, missing);
+        }
+        for (Map.Entry<String, NavigableMap<Long, MissingVote>> entry : byElection.entrySet()) {
+            NavigableMap<Long, MissingVote> wanted = entry.getValue();
+            Set<Long> found = new HashSet<>();
+            try {
+                archive.find(entry.getKey(), wanted.navigableKeySet(), (voteId, voterId, candidateId, candidateName, position, millis) -> {
+                    MissingVote missing = wanted.get(voteId);
+                    found.add(voteId);
+                    if (!Model.formatId(voterId).equals(missing.voterId) || !candidateId.equals(missing.candidateId)) {
+                        failures.add("Vote " + voteId + " was modified after it was recorded");
+                    }
+                });
+            } catch (RuntimeException e) {
+                failures.add("Archived votes of election " + entry.getKey() + " could not be read (" + e.getMessage() + ")");
+                continue;
+            }
+            for (Long voteId : wanted.keySet()) {
+                if (!found.contains(voteId)) {
+                    failures.add("Vote " + voteId + " was deleted after it was recorded");
+                }
+            }
+        }
+        return failures;
+    }
+
+    // Votes in the default election hash exactly as they did before elections existed, so older chains still verify.
+    static String entryHash(String prevHash, long seq, long voteId, String electionId, String voterId,
+                            String candidateId, long voteTime) {
+        String voter = Model.DEFAULT_ELECTION.equals(electionId) ? voterId : electionId + "/" + voterId;
+        String entry = prevHash + "|" + seq + "|" + voteId + "|" + voter + "|" + candidateId + "|" + voteTime;
+        return toHex(sha256().digest(entry.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static byte[] merkleRoot(List<byte[]> leaves) {
+        List<byte[]> level = new ArrayList<>(leaves);
+        while (level.size() > 1) {
+            List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                byte[] left = level.get(i);
+                byte[] right = i + 1 < level.size() ? level.get(i + 1) : left;
+                MessageDigest digest = sha256();
+                digest.update(left);
+                digest.update(right);
+                parents.add(digest.digest());
+            }
+            level = parents;
+        }
+        return level.isEmpty() ? new byte[32] : level.get(0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,8 @@
+package Main;
+
+public interface VoteListener {
+    void onVoteCast(String electionId, long voteId, String voterId, String candidateId, String position, long timestampMillis);
+
+    default void onVoterRegistered(String electionId, String voterId) {
+    }
+}
@@ -0,0 +1,169 @@
+package Main;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class VoterRegistry {
+    public interface Visitor {
+        void visit(int idNumber, boolean hasVoted);
+    }
+
+    public static final int MAX_ID = 99_999_999;
+
+    // Record: [flags:1][unused:1][name length:2][name offset:4], addressed directly by ID number.
+    private static final int RECORD_BYTES = 8;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_COUNT = (MAX_ID >> PAGE_BITS) + 1;
+    private static final int ARENA_CHUNK_BYTES = 16 << 20;
+    private static final int MIN_ARENA_CHUNK_BYTES = 64 << 10;
+    private static final int EXPECTED_NAME_BYTES = 24;
+    private static final byte PRESENT = 1;
+    private static final byte VOTED = 2;
+
+    // Pages are allocated on first use so a sparse roll does not pay for all 10^8 slots. The array
+    // publishes each page safely to the unsynchronised readers.
+    private final AtomicReferenceArray<ByteBuffer> pages = new AtomicReferenceArray<>(PAGE_COUNT);
+    // Name offsets address chunk i at i * ARENA_CHUNK_BYTES, but the first chunk is sized for the
+    // expected roll and each later one doubles up to that size, so a small roll stays small.
+    private final List<ByteBuffer> arena = new ArrayList<>();
+    private final int firstChunkBytes;
+    private int size;
+    private int votedCount;
+    private long pageBytes;
+    private long arenaBytes;
+
+    public VoterRegistry(int expectedVoters) {
+        long bytes = (long) expectedVoters * EXPECTED_NAME_BYTES;
+        this.firstChunkBytes = (int) Math.max(MIN_ARENA_CHUNK_BYTES, Math.min(ARENA_CHUNK_BYTES, bytes));
+    }
+
+    public synchronized boolean add(int idNumber, String name, boolean hasVoted) {
+        ByteBuffer page = page(idNumber, true);
+        int at = slot(idNumber);
+        if ((page.get(at) & PRESENT) != 0) {
+            return false;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Name too long for voter " + idNumber);
+        }
+        page.putShort(at + 2, (short) bytes.length);
+        page.putInt(at + 4, appendName(bytes));
+        page.put(at, hasVoted ? PRESENT | VOTED : PRESENT);
+        size++;
+        if (hasVoted) {
+            votedCount++;
+        }
+        return true;
+    }
+
+    public boolean contains(int idNumber) {
+        ByteBuffer page = page(idNumber, false);
+        return page != null && (page.get(slot(idNumber)) & PRESENT) != 0;
+    }
+
+    // Reads take no lock. Pages are published through the atomic array, so a reader always sees a
+    // fully allocated page; only a flag written meanwhile may be missed, and a stale "not voted"
+    // just means the caller falls back to the database.
+    public boolean hasVoted(int idNumber) {
+        ByteBuffer page = page(idNumber, false);
+        return page != null && (page.get(slot(idNumber)) & VOTED) != 0;
+    }
+
+    public synchronized boolean markVoted(int idNumber) {
+        ByteBuffer page = page(idNumber, false);
+        if (page == null) {
+            return false;
+        }
+        int at = slot(idNumber);
+        byte flags = page.get(at);
+        if ((flags & PRESENT) == 0 || (flags & VOTED) != 0) {
+            return false;
+        }
+        page.put(at, (byte) (flags | VOTED));
+        votedCount++;
+        return true;
+    }
+
+    public synchronized String getName(int idNumber) {
+        ByteBuffer page = page(idNumber, false);
+        if (page == null) {
+            return null;
+        }
+        int at = slot(idNumber);
+        if ((page.get(at) & PRESENT) == 0) {
+            return null;
+        }
+        int length = page.getShort(at + 2) & 0xFFFF;
+        int offset = page.getInt(at + 4);
+        ByteBuffer chunk = arena.get(offset / ARENA_CHUNK_BYTES);
+        byte[] bytes = new byte[length];
+        chunk.get(offset % ARENA_CHUNK_BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int p = 0; p < PAGE_COUNT; p++) {
+            ByteBuffer page = pages.get(p);
+            if (page == null) {
+                continue;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                byte flags = page.get(i * RECORD_BYTES);
+                if ((flags & PRESENT) != 0) {
+                    visitor.visit((p << PAGE_BITS) | i, (flags & VOTED) != 0);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int votedCount() {
+        return votedCount;
+    }
+
+    public synchronized long offHeapBytes() {
+        return pageBytes + arenaBytes;
+    }
+
+    private ByteBuffer page(int idNumber, boolean create) {
+        if (idNumber < 0 || idNumber > MAX_ID) {
+            throw new IllegalArgumentException("ID number out of range: " + idNumber);
+        }
+        int index = idNumber >>> PAGE_BITS;
+        ByteBuffer page = pages.get(index);
+        if (page == null && create) {
+            page = ByteBuffer.allocateDirect(PAGE_SIZE * RECORD_BYTES);
+            pages.set(index, page);
+            pageBytes += page.capacity();
+        }
+        return page;
+    }
+
+    private static int slot(int idNumber) {
+        return (idNumber & (PAGE_SIZE - 1)) * RECORD_BYTES;
+    }
+
+    private int appendName(byte[] bytes) {
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get(arena.size() - 1);
+        if (chunk == null || chunk.remaining() < bytes.length) {
+            if ((long) (arena.size() + 1) * ARENA_CHUNK_BYTES > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Voter name arena is full");
+            }
+            long grown = (long) firstChunkBytes << Math.min(arena.size(), 30);
+            chunk = ByteBuffer.allocateDirect((int) Math.max(bytes.length, Math.min(ARENA_CHUNK_BYTES, grown)));
+            arena.add(chunk);
+            arenaBytes += chunk.capacity();
+        }
+        int offset = (arena.size() - 1) * ARENA_CHUNK_BYTES + chunk.position();
+        chunk.put(bytes);
+        return offset;
+    }
+}
@@ -0,0 +1,142 @@
+package Main;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+public class VoterRegistryBenchmark {
+    private static final int ID_BASE = 10_000_000;
+
+    private final List<Long> pauses = Collections.synchronizedList(new ArrayList<>());
+
+    public static void main(String[] args) {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        int voters = Integer.parseInt(options.getOrDefault("voters", "5000000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        String mode = options.getOrDefault("mode", "both");
+
+        VoterRegistryBenchmark benchmark = new VoterRegistryBenchmark();
+        benchmark.listenForPauses();
+        System.out.printf("%d voters, %d s of lookup/mark workload per mode%n", voters, seconds);
+        System.out.println("Run each mode in its own JVM (--mode=heap / --mode=offheap) for the cleanest numbers.");
+        if (!mode.equals("offheap")) {
+            benchmark.runHeap(voters, seconds);
+        }
+        if (!mode.equals("heap")) {
+            benchmark.runOffHeap(voters, seconds);
+        }
+    }
+
+    private void runHeap(int voters, int seconds) {
+        long before = usedHeapAfterGc();
+        Map<Integer, Model.Voter> roll = new HashMap<>(voters * 4 / 3 + 1);
+        for (int i = 0; i < voters; i++) {
+            Model.Voter voter = new Model.Voter("Voter Number " + i, Model.formatId(ID_BASE + i));
+            voter.getPersonId();
+            roll.put(voter.getId(), voter);
+        }
+        long retained = usedHeapAfterGc() - before;
+
+        pauses.clear();
+        long operations = workload(seconds, voters, id -> {
+            Model.Voter voter = roll.get(id);
+            if (voter != null && !voter.hasVoted()) {
+                voter.markVoted();
+            }
+        });
+        report("on-heap Model.Voter", retained, 0, operations, seconds);
+        roll.clear();
+    }
+
+    private void runOffHeap(int voters, int seconds) {
+        long before = usedHeapAfterGc();
+        VoterRegistry registry = new VoterRegistry(voters);
+        for (int i = 0; i < voters; i++) {
+            registry.add(ID_BASE + i, "Voter Number " + i, false);
+        }
+        long retained = usedHeapAfterGc() - before;
+
+        pauses.clear();
+        long operations = workload(seconds, voters, id -> {
+            if (!registry.hasVoted(id)) {
+                registry.markVoted(id);
+            }
+        });
+        report("off-heap VoterRegistry", retained, registry.offHeapBytes(), operations, seconds);
+    }
+
+    // Each operation also allocates a little garbage, like a real request would, so the collector has work to do.
+    private long workload(int seconds, int voters, IntConsumer operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long operations = 0;
+        long sink = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                int id = ID_BASE + random.nextInt(voters);
+                operation.accept(id);
+                sink += new StringBuilder("req-").append(id).toString().length();
+            }
+            operations += 10_000;
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        return operations;
+    }
+
+    private void report(String label, long retainedHeap, long offHeap, long operations, int seconds) {
+        List<Long> sorted;
+        synchronized (pauses) {
+            sorted = new ArrayList<>(pauses);
+        }
+        Collections.sort(sorted);
+        System.out.println();
+        System.out.println(label);
+        System.out.println("----------------------------------------");
+        System.out.printf("Retained heap:      %.1f MB%n", retainedHeap / 1048576.0);
+        System.out.printf("Off-heap:           %.1f MB%n", offHeap / 1048576.0);
+        System.out.printf("Operations/s:       %.0f%n", operations / (double) seconds);
+        System.out.printf("GC pauses:          %d%n", sorted.size());
+        System.out.printf("GC pause p50/p99:   %d / %d ms%n", percentile(sorted, 0.50), percentile(sorted, 0.99));
+        System.out.printf("GC pause max:       %d ms%n", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private void listenForPauses() {
+        NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // Concurrent cycles run alongside the application and are not stop-the-world pauses.
+                if (!info.getGcName().contains("Concurrent")) {
+                    pauses.add(info.getGcInfo().getDuration());
+                }
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -1,17 +1,114 @@
 package Main;
 
+import javax.sql.DataSource;
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class VotingSystem {
     public static void main(String[] args) {
+        long startNanos = System.nanoTime();
+        boolean measureStartup = Boolean.getBoolean("voting.measureStartup")
+                || Arrays.asList(args).contains("--measure-startup");
+
+        String url = System.getProperty("voting.db.url", "jdbc:mysql://localhost:3306/voting_system");
+        String username = "root";
+        String password = "Ee2ybgfi";
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : System.getProperty("voting.db.replicas", "").split(",")) {
+            if (!replicaUrl.trim().isEmpty()) {
+                replicas.add(new DriverManagerDataSource(replicaUrl.trim(), username, password));
+            }
+        }
+        long maxStalenessMillis = Long.getLong("voting.db.maxStalenessMillis", 5000);
+        Model model = new Model(new DriverManagerDataSource(url, username, password), replicas, maxStalenessMillis);
+        int replicationPort = Integer.getInteger("voting.replication.port", 0);
+        if (replicationPort > 0) {
+            try {
+                new ReplicationServer(model, replicationPort).start();
+            } catch (IOException e) {
+                System.err.println("Vote replication is disabled: " + e.getMessage());
+            }
+        }
+
+        // Database work runs on a background thread while the EDT builds the first screen.
+        ExecutorService startup = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> ready = CompletableFuture
+                .runAsync(() -> {
+                    DriverManager.getDrivers();
+                    mark(measureStartup, startNanos, "JDBC drivers loaded");
+                }, startup)
+                .thenRunAsync(() -> {
+                    model.ensureSchema();
+                    model.startLedger();
+                    mark(measureStartup, startNanos, "schema checked");
+                }, startup)
+                .thenRunAsync(() -> {
+                    // Other elections are loaded on their own when they are first selected.
+                    model.startAnalytics(Integer.getInteger("voting.analyticsHours", 24));
+                    model.getAllCandidates();
+                    mark(measureStartup, startNanos, "caches warmed");
+                }, startup);
+        ready.whenComplete((ignored, error) -> startup.shutdown());
+        String feedDir = System.getProperty("voting.resultsFeed.dir", "");
+        if (!feedDir.isEmpty()) {
+            ready.thenRun(() -> startResultsFeeds(model, Paths.get(feedDir)));
+        }
+
         SwingUtilities.invokeLater(() -> {
-            String url = "jdbc:mysql://localhost:3306/voting_system";
-            String username = "root";
-            String password = "Ee2ybgfi";
-            Model model = new Model(url, username, password);
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
             View view = new View();
             Controller controller = new Controller(model, view);
             view.setController(controller);
+            view.setVisible(true);
+            mark(measureStartup, startNanos, "first screen visible");
+
+            ready.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    view.showMessage("Database is not available: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    mark(measureStartup, startNanos, "ready to vote");
+                }
+            }));
         });
     }
+
+    // Results boards map results-<election>.feed from this directory; see ResultsBoard.
+    private static void startResultsFeeds(Model model, Path dir) {
+        long intervalMillis = Long.getLong("voting.resultsFeed.millis", 1000);
+        int capacity = Integer.getInteger("voting.resultsFeed.capacity", ResultsFeed.DEFAULT_CAPACITY);
+        for (String electionId : System.getProperty("voting.resultsFeed.elections", Model.DEFAULT_ELECTION).split(",")) {
+            if (electionId.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                model.startResultsFeed(ResultsFeed.fileFor(dir, electionId.trim()), electionId.trim(), intervalMillis, capacity);
+            } catch (IOException e) {
+                System.err.println("Results feed for " + electionId.trim() + " is disabled: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void mark(boolean measureStartup, long startNanos, String phase) {
+        if (measureStartup) {
+            System.out.printf("[startup] %-22s %6d ms%n", phase, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
 }
\ No newline at end of file